@@ -1,5 +1,6 @@
 package net.blueberrymc.client.resources;
 
+import com.google.common.collect.ImmutableMap;
 import net.blueberrymc.common.Blueberry;
 import net.minecraft.client.Minecraft;
 import net.minecraft.network.chat.BaseComponent;
@@ -10,22 +11,23 @@ import org.jetbrains.annotations.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.Arrays;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class BlueberryText extends BaseComponent {
-    private static final ConcurrentHashMap<String, Properties> lang = new ConcurrentHashMap<>();
-    private static final ConcurrentHashMap<String, String> cache = new ConcurrentHashMap<>();
+    private static volatile Translations translations = new Translations(null);
     private final String namespace;
     private final String path;
-    private final List<Object> args;
+    private final Key key;
+    private final Object[] args;
 
     public BlueberryText(@NotNull String namespace, @NotNull String path, @Nullable Object@Nullable... arguments) {
         this.namespace = namespace;
         this.path = path;
-        this.args = arguments != null ? Arrays.asList(arguments) : null;
+        this.key = new Key(namespace, path);
+        this.args = arguments;
     }
 
     @NotNull
@@ -57,26 +59,47 @@ public class BlueberryText extends BaseComponent {
         return String.format("/assets/%s/lang/%s.json", this.namespace, code);
     }
 
+    /**
+     * Returns the language file of the namespace. Once the language files have been preloaded by the resource reload,
+     * this method never reads files and returns empty properties for languages which were not preloaded.
+     * @param code the language code
+     * @return the translations
+     */
     @NotNull
     public Properties getProperties(@NotNull String code) {
-        String filePath = String.format("/assets/%s/lang/%s", this.namespace, code);
-        if (!lang.containsKey(filePath)) {
-            Properties properties = new Properties();
-            String propPath = getPropertiesLanguageFilePath(code);
-            InputStream in = Blueberry.class.getResourceAsStream(propPath);
-            if (in == null) in = Blueberry.getModLoader().getResourceAsStream(propPath);
+        return translations.getProperties(this.namespace, code);
+    }
+
+    @NotNull
+    static String getLanguageKey(@NotNull String namespace, @NotNull String code) {
+        return String.format("/assets/%s/lang/%s", namespace, code);
+    }
+
+    /**
+     * Reads the language file of the namespace. The file may be either a properties file ({@code .lang}) or a json
+     * file ({@code .json}).
+     * @param namespace the namespace
+     * @param code the language code
+     * @return the translations, or empty properties if the file does not exist
+     */
+    @NotNull
+    static Properties loadProperties(@NotNull String namespace, @NotNull String code) {
+        Properties properties = new Properties();
+        String propPath = String.format("/assets/%s/lang/%s.lang", namespace, code);
+        InputStream in = Blueberry.class.getResourceAsStream(propPath);
+        if (in == null) in = Blueberry.getModLoader().getResourceAsStream(propPath);
+        if (in != null) {
+            try (InputStream stream = in) {
+                properties.load(stream);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        } else {
+            String jsonPath = String.format("/assets/%s/lang/%s.json", namespace, code);
+            in = Blueberry.class.getResourceAsStream(jsonPath);
+            if (in == null) in = Blueberry.getModLoader().getResourceAsStream(jsonPath);
             if (in != null) {
-                try {
-                    properties.load(in);
-                } catch (IOException ex) {
-                    throw new RuntimeException(ex);
-                }
-            } else {
-                String jsonPath = getJsonLanguageFilePath(code);
-                in = Blueberry.class.getResourceAsStream(jsonPath);
-                if (in == null) in = Blueberry.getModLoader().getResourceAsStream(jsonPath);
-                if (in != null) {
-                    InputStreamReader reader = new InputStreamReader(in);
+                try (InputStreamReader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
                     GsonHelper.parse(reader).entrySet().forEach((entry) -> {
                         String s;
                         try {
@@ -86,26 +109,35 @@ public class BlueberryText extends BaseComponent {
                         }
                         properties.setProperty(entry.getKey(), s);
                     });
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
                 }
             }
-            lang.put(filePath, properties);
         }
-        return lang.get(filePath);
+        return properties;
+    }
+
+    /**
+     * Replaces all language files at once, and discards the translations resolved from the old ones.
+     * @param properties the language files keyed by {@link #getLanguageKey(String, String)}
+     */
+    static void setProperties(@NotNull Map<String, Properties> properties) {
+        translations = new Translations(ImmutableMap.copyOf(properties));
     }
 
     @NotNull
     @Override
     public String getContents() {
-        String cachePath = String.format("%s:%s:%s", this.namespace, this.path, getLanguageCode());
-        if (!cache.containsKey(cachePath)) {
-            String text = getProperties(getLanguageCode()).getProperty(path, getProperties("en_us").getProperty(path, path));
-            cache.put(cachePath, text);
+        String code = getLanguageCode();
+        LanguageTable table = translations.getTable(code);
+        TranslationTemplate template = table.templates.get(key);
+        if (template == null) {
+            String text = getProperties(code).getProperty(path, getProperties("en_us").getProperty(path, path));
+            template = TranslationTemplate.compile(text);
+            table.templates.put(key, template);
         }
-        String text = cache.get(cachePath);
-        if (args != null) {
-            text = String.format(text, args.toArray());
-        }
-        return text;
+        if (args == null) return template.getText();
+        return template.format(args);
     }
 
     @NotNull
@@ -113,4 +145,69 @@ public class BlueberryText extends BaseComponent {
     public BaseComponent plainCopy() {
         return new BlueberryText(this.namespace, this.path);
     }
+
+    private static class Key {
+        private final String namespace;
+        private final String path;
+        private final int hash;
+
+        private Key(@NotNull String namespace, @NotNull String path) {
+            this.namespace = namespace;
+            this.path = path;
+            this.hash = 31 * namespace.hashCode() + path.hashCode();
+        }
+
+        @Override
+        public boolean equals(@Nullable Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return hash == key.hash && namespace.equals(key.namespace) && path.equals(key.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static class Translations {
+        private static final Properties EMPTY = new Properties();
+        // null until the language files are preloaded (never on the server), in which case they are read on demand
+        @Nullable private final Map<String, Properties> preloaded;
+        private final ConcurrentHashMap<String, Properties> loaded = new ConcurrentHashMap<>();
+        // language code -> compiled translations
+        private final ConcurrentHashMap<String, LanguageTable> tables = new ConcurrentHashMap<>();
+        private volatile LanguageTable currentTable = null;
+
+        private Translations(@Nullable Map<String, Properties> preloaded) {
+            this.preloaded = preloaded;
+        }
+
+        @NotNull
+        private Properties getProperties(@NotNull String namespace, @NotNull String code) {
+            String key = getLanguageKey(namespace, code);
+            if (preloaded != null) return preloaded.getOrDefault(key, EMPTY);
+            return loaded.computeIfAbsent(key, k -> loadProperties(namespace, code));
+        }
+
+        @NotNull
+        private LanguageTable getTable(@NotNull String code) {
+            LanguageTable table = currentTable;
+            if (table == null || !table.code.equals(code)) {
+                table = tables.computeIfAbsent(code, LanguageTable::new);
+                currentTable = table;
+            }
+            return table;
+        }
+    }
+
+    private static class LanguageTable {
+        private final String code;
+        private final ConcurrentHashMap<Key, TranslationTemplate> templates = new ConcurrentHashMap<>();
+
+        private LanguageTable(@NotNull String code) {
+            this.code = code;
+        }
+    }
 }
@@ -0,0 +1,61 @@
+package net.blueberrymc.client.resources;
+
+import net.blueberrymc.common.Blueberry;
+import net.blueberrymc.common.Side;
+import net.blueberrymc.common.SideOnly;
+import net.blueberrymc.common.bml.BlueberryMod;
+import net.blueberrymc.common.resources.ModResourcePreparer;
+import net.minecraft.server.packs.PackType;
+import net.minecraft.server.packs.resources.PreparableReloadListener;
+import net.minecraft.server.packs.resources.ResourceManager;
+import net.minecraft.util.profiling.ProfilerFiller;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Reads the language files of all mods for the selected language and en_us in parallel while the resources are
+ * reloading, and replaces the ones used by {@link BlueberryText} at once. Changing the language reloads the resources,
+ * so texts never read files while they are rendered.
+ */
+@SideOnly(Side.CLIENT)
+public class ModLanguageReloadListener implements PreparableReloadListener {
+    @NotNull
+    @Override
+    public CompletableFuture<Void> reload(@NotNull PreparationBarrier barrier, @NotNull ResourceManager resourceManager, @NotNull ProfilerFiller preparationsProfiler, @NotNull ProfilerFiller reloadProfiler, @NotNull Executor backgroundExecutor, @NotNull Executor gameExecutor) {
+        return CompletableFuture.supplyAsync(this::prepare, backgroundExecutor)
+                .thenCompose(barrier::wait)
+                .thenAcceptAsync(BlueberryText::setProperties, gameExecutor);
+    }
+
+    @NotNull
+    private Map<String, Properties> prepare() {
+        Set<String> codes = new LinkedHashSet<>();
+        codes.add(BlueberryText.getLanguageCode());
+        codes.add("en_us");
+        Set<String> namespaces = new LinkedHashSet<>();
+        for (BlueberryMod mod : Blueberry.getModLoader().getLoadedMods()) {
+            namespaces.addAll(mod.getResourceIndex().getNamespaces(PackType.CLIENT_RESOURCES));
+        }
+        List<String[]> files = new ArrayList<>();
+        for (String namespace : namespaces) {
+            for (String code : codes) {
+                files.add(new String[] { namespace, code });
+            }
+        }
+        List<Properties> loaded = ModResourcePreparer.map(files, file -> BlueberryText.loadProperties(file[0], file[1]));
+        Map<String, Properties> properties = new HashMap<>();
+        for (int i = 0; i < files.size(); i++) {
+            properties.put(BlueberryText.getLanguageKey(files.get(i)[0], files.get(i)[1]), loaded.get(i));
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,121 @@
+package net.blueberrymc.client.resources;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Formattable;
+import java.util.List;
+
+/**
+ * A translated text parsed once, so that the arguments can be substituted without {@link String#format(String, Object...)}.
+ * Only {@code %s}, {@code %n$s}, {@code %%} and {@code %n} are handled here; texts with any other format specifier are
+ * passed to {@link String#format(String, Object...)} as before.
+ */
+class TranslationTemplate {
+    private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(StringBuilder::new);
+    private final String text;
+    // literals[i] comes before the argument argumentIndexes[i], and the last literal comes after all arguments
+    private final String[] literals;
+    private final int[] argumentIndexes;
+    private final int requiredArguments;
+    private final boolean useFormatter;
+
+    private TranslationTemplate(@NotNull String text, @NotNull String@NotNull[] literals, int@NotNull[] argumentIndexes, boolean useFormatter) {
+        this.text = text;
+        this.literals = literals;
+        this.argumentIndexes = argumentIndexes;
+        this.useFormatter = useFormatter;
+        int required = 0;
+        for (int index : argumentIndexes) required = Math.max(required, index + 1);
+        this.requiredArguments = required;
+    }
+
+    @NotNull
+    static TranslationTemplate compile(@NotNull String text) {
+        if (text.indexOf('%') == -1) return new TranslationTemplate(text, new String[] { text }, new int[0], false);
+        List<String> literals = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int ordinaryIndex = 0;
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i++);
+            if (c != '%') {
+                literal.append(c);
+                continue;
+            }
+            if (i >= text.length()) return useFormatter(text);
+            char next = text.charAt(i);
+            if (next == '%') {
+                literal.append('%');
+                i++;
+            } else if (next == 'n') {
+                literal.append(System.lineSeparator());
+                i++;
+            } else if (next == 's') {
+                literals.add(literal.toString());
+                literal.setLength(0);
+                indexes.add(ordinaryIndex++);
+                i++;
+            } else if (Character.isDigit(next)) {
+                int end = i;
+                while (end < text.length() && Character.isDigit(text.charAt(end))) end++;
+                if (end + 1 >= text.length() || text.charAt(end) != '$' || text.charAt(end + 1) != 's') return useFormatter(text);
+                int index;
+                try {
+                    index = Integer.parseInt(text.substring(i, end)) - 1;
+                } catch (NumberFormatException ex) {
+                    return useFormatter(text);
+                }
+                if (index < 0) return useFormatter(text);
+                literals.add(literal.toString());
+                literal.setLength(0);
+                indexes.add(index);
+                i = end + 2;
+            } else {
+                return useFormatter(text);
+            }
+        }
+        literals.add(literal.toString());
+        int[] argumentIndexes = new int[indexes.size()];
+        for (int j = 0; j < argumentIndexes.length; j++) argumentIndexes[j] = indexes.get(j);
+        return new TranslationTemplate(text, literals.toArray(new String[0]), argumentIndexes, false);
+    }
+
+    @NotNull
+    private static TranslationTemplate useFormatter(@NotNull String text) {
+        return new TranslationTemplate(text, new String[] { text }, new int[0], true);
+    }
+
+    /**
+     * Returns the text without substituting arguments.
+     */
+    @Contract(pure = true)
+    @NotNull
+    String getText() {
+        return text;
+    }
+
+    /**
+     * Substitutes the arguments, like {@link String#format(String, Object...)} does.
+     * @param args the arguments
+     * @return the formatted text
+     */
+    @NotNull
+    String format(@Nullable Object@NotNull[] args) {
+        if (useFormatter || args.length < requiredArguments) return String.format(text, args);
+        if (argumentIndexes.length == 0) return literals[0];
+        for (int index : argumentIndexes) {
+            if (args[index] instanceof Formattable) return String.format(text, args);
+        }
+        StringBuilder sb = BUILDER.get();
+        sb.setLength(0);
+        for (int i = 0; i < argumentIndexes.length; i++) {
+            sb.append(literals[i]).append(args[argumentIndexes[i]]);
+        }
+        sb.append(literals[literals.length - 1]);
+        return sb.toString();
+    }
+}
@@ -9,14 +9,21 @@ import net.blueberrymc.command.argument.ModIdArgument;
 import net.blueberrymc.common.Blueberry;
 import net.blueberrymc.common.BlueberryUtil;
 import net.blueberrymc.common.bml.BlueberryMod;
+import net.blueberrymc.network.BlueberryNetworkManager;
+import net.blueberrymc.network.BlueberryPacketFlow;
+import net.blueberrymc.network.ChannelStats;
 import net.blueberrymc.server.BlueberryServer;
 import net.minecraft.ChatFormatting;
 import net.minecraft.commands.CommandSourceStack;
 import net.minecraft.network.chat.TextComponent;
+import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.MinecraftServer;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.stream.LongStream;
 
 import static net.minecraft.commands.Commands.argument;
@@ -38,6 +45,9 @@ public class BlueberryCommand {
                         .then(literal("tps")
                                 .executes(context -> executeTpsCommand(context.getSource()))
                         )
+                        .then(literal("network")
+                                .executes(context -> executeNetworkCommand(context.getSource()))
+                        )
         );
     }
 
@@ -68,6 +78,39 @@ public class BlueberryCommand {
         return 1;
     }
 
+    private static int executeNetworkCommand(CommandSourceStack source) {
+        sendNetworkStats(source, "Client bound", BlueberryPacketFlow.TO_CLIENT);
+        sendNetworkStats(source, "Server bound", BlueberryPacketFlow.TO_SERVER);
+        return 1;
+    }
+
+    private static void sendNetworkStats(CommandSourceStack source, String name, BlueberryPacketFlow flow) {
+        List<Map.Entry<ResourceLocation, ChannelStats>> entries = new ArrayList<>(BlueberryNetworkManager.getStats(flow).entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue().getBytes(), a.getValue().getBytes()));
+        source.sendSuccess(new TextComponent(name + " packets (" + entries.size() + " channels):").withStyle(ChatFormatting.GOLD), false);
+        for (Map.Entry<ResourceLocation, ChannelStats> entry : entries.subList(0, Math.min(10, entries.size()))) {
+            ChannelStats stats = entry.getValue();
+            String text = entry.getKey() + ": " + stats.getPackets() + " packets, " + formatBytes(stats.getBytes())
+                    + ", encode " + formatNanos(stats.getEncodeTime().getAverageNanos()) + " avg / " + formatNanos(stats.getEncodeTime().getPercentileNanos(0.99)) + " p99"
+                    + ", decode " + formatNanos(stats.getDecodeTime().getAverageNanos()) + " avg / " + formatNanos(stats.getDecodeTime().getPercentileNanos(0.99)) + " p99";
+            if (stats.getRateLimited() > 0 || stats.getDropped() > 0) {
+                text += ", " + stats.getRateLimited() + " rate limited, " + stats.getDropped() + " dropped";
+            }
+            source.sendSuccess(new TextComponent(text), false);
+        }
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        if (bytes < 1024 * 1024) return round(bytes / 1024D) + " KiB";
+        return round(bytes / (1024D * 1024D)) + " MiB";
+    }
+
+    private static String formatNanos(long nanos) {
+        if (nanos < 1000000) return round(nanos / 1000D) + " us";
+        return round(nanos / 1000000D) + " ms";
+    }
+
     private static double getAverageTPS(long[] longs) {
         return getAverageTPS(Arrays.stream(longs));
     }
@@ -9,9 +9,11 @@ import net.blueberrymc.common.bml.ModLoader;
 import net.blueberrymc.common.bml.ModManager;
 import net.blueberrymc.common.bml.ModState;
 import net.blueberrymc.common.bml.InternalBlueberryMod;
+import net.blueberrymc.common.bml.loading.StartupProfiler;
 import net.blueberrymc.common.util.BlueberryVersion;
 import net.blueberrymc.common.util.DiscordRPCTaskExecutor;
 import net.blueberrymc.common.util.Versioning;
+import net.blueberrymc.config.ModConfig;
 import net.blueberrymc.config.ModDescriptionFile;
 import net.blueberrymc.server.BlueberryServer;
 import net.minecraft.CrashReport;
@@ -134,7 +136,7 @@ public class Blueberry {
         } else {
             util = new BlueberryNope();
         }
-        try {
+        try (StartupProfiler.Section ignored = StartupProfiler.start("Bootstrap")) {
             modLoader = new BlueberryModLoader();
             BlueberryVersion version = getVersion();
             LOGGER.info("Loading " + name + " version " + version.getFullyQualifiedVersion() + " (" + getSide().getName() + ")");
@@ -156,6 +158,7 @@ public class Blueberry {
         List<BlueberryMod> mods = new ArrayList<>(modLoader.getLoadedMods());
         Collections.reverse(mods);
         mods.forEach(modLoader::disableMod);
+        ModConfig.flushPendingSaves();
     }
 
     @SuppressWarnings("deprecation")
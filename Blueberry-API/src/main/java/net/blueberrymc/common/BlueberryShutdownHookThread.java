@@ -1,6 +1,7 @@
 package net.blueberrymc.common;
 
 import net.blueberrymc.common.util.DiscordRPCTaskExecutor;
+import net.blueberrymc.config.ModConfig;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -17,5 +18,7 @@ class BlueberryShutdownHookThread extends Thread {
         if (executed) return; // Don't execute more than once
         executed = true;
         DiscordRPCTaskExecutor.shutdownNow();
+        // usually a no-op, Blueberry#shutdown flushes the saves after disabling the mods
+        ModConfig.flushPendingSaves();
     }
 }
@@ -6,6 +6,7 @@ import net.blueberrymc.common.bml.config.CompoundVisualConfig;
 import net.blueberrymc.common.bml.config.RootCompoundVisualConfig;
 import net.blueberrymc.common.bml.config.VisualConfig;
 import net.blueberrymc.common.resources.BlueberryResourceManager;
+import net.blueberrymc.common.resources.ModResourceIndex;
 import net.blueberrymc.config.ModConfig;
 import net.blueberrymc.config.ModDescriptionFile;
 import net.minecraft.launchwrapper.LaunchClassLoader;
@@ -27,6 +28,7 @@ public class BlueberryMod implements ModInfo {
     private RootCompoundVisualConfig visualConfig;
     private File file;
     private BlueberryResourceManager resourceManager;
+    private volatile ModResourceIndex resourceIndex;
     boolean first = true;
     boolean fromSource = false;
     @Nullable File sourceDir = null;
@@ -146,6 +148,35 @@ public class BlueberryMod implements ModInfo {
         return resourceManager;
     }
 
+    /**
+     * Returns the index of the entries in the mod file. The index is built on the first call, and rebuilt by
+     * {@link #refreshResourceIndex()}.
+     * @return the index
+     */
+    @NotNull
+    public final ModResourceIndex getResourceIndex() {
+        ModResourceIndex index = resourceIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = resourceIndex;
+                if (index == null) resourceIndex = index = ModResourceIndex.build(file);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Rebuilds the index if the mod is a directory, so that files which were added or removed since it was built are
+     * found. Called when the resource packs are reloaded. The files of a jar cannot change while it is loaded.
+     */
+    public final void refreshResourceIndex() {
+        if (!file.isDirectory()) return;
+        ModResourceIndex index = ModResourceIndex.build(file);
+        synchronized (this) {
+            resourceIndex = index;
+        }
+    }
+
     /**
      * Saves the configuration file. {@link VisualConfig#id(String)} must be called with valid config path to work.
      * @param compoundVisualConfig the visual config
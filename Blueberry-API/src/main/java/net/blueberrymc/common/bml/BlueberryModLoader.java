@@ -8,6 +8,7 @@ import net.blueberrymc.common.SideOnly;
 import net.blueberrymc.common.bml.config.RootCompoundVisualConfig;
 import net.blueberrymc.common.bml.loading.ModLoadingError;
 import net.blueberrymc.common.bml.loading.ModLoadingErrors;
+import net.blueberrymc.common.bml.loading.StartupProfiler;
 import net.blueberrymc.common.resources.BlueberryResourceManager;
 import net.blueberrymc.common.util.ClasspathUtil;
 import net.blueberrymc.common.util.FileUtil;
@@ -16,6 +17,7 @@ import net.blueberrymc.common.util.UniversalClassLoader;
 import net.blueberrymc.common.util.Versioning;
 import net.blueberrymc.common.util.tools.JavaTools;
 import net.blueberrymc.common.util.tools.liveCompiler.JavaCompiler;
+import net.blueberrymc.config.ModConfig;
 import net.blueberrymc.config.ModDescriptionFile;
 import net.blueberrymc.config.yaml.YamlConfiguration;
 import net.blueberrymc.server.packs.resources.BlueberryResourceProvider;
@@ -33,6 +35,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URL;
+import java.nio.file.Files;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Deque;
@@ -56,10 +59,13 @@ public class BlueberryModLoader implements ModLoader {
     private final ConcurrentHashMap<String, BlueberryMod> id2ModMap = new ConcurrentHashMap<>();
     private final Set<ClassLoader> loaders = new HashSet<>();
     private final List<BlueberryMod> registeredMods = new ArrayList<>();
+    // path -> the first registered mod whose file contains the path
+    private volatile ConcurrentHashMap<String, BlueberryMod> resourceOwners = new ConcurrentHashMap<>();
     private final List<String> circularDependency = new ArrayList<>();
     private final File configDir = new File(Blueberry.getGameDir(), "config");
     private final File modsDir = new File(Blueberry.getGameDir(), "mods");
     private UniversalClassLoader universalClassLoader = null;
+    private SourceModWatcher sourceModWatcher = null;
 
     public BlueberryModLoader() {
         if (!this.configDir.exists() && !this.configDir.mkdir()) {
@@ -93,6 +99,7 @@ public class BlueberryModLoader implements ModLoader {
         Deque<File> toLoad = new ConcurrentLinkedDeque<>();
         int dirCount = 0;
         int fileCount = 0;
+        StartupProfiler.Section scanSection = StartupProfiler.start("Mod scanning");
         File[] files = this.getModsDir().listFiles();
         for (File file : Objects.requireNonNull(files)) {
             if (file.isDirectory()) {
@@ -136,7 +143,7 @@ public class BlueberryModLoader implements ModLoader {
         Map<String, File> fromSource = new HashMap<>();
         List<File> toAdd = new ArrayList<>();
         toLoad.forEach(file -> {
-            try {
+            try (StartupProfiler.Section ignored = StartupProfiler.start("Preprocessing", file.getName())) {
                 Map.Entry<ModDescriptionFile, File> entry = preprocess(file);
                 if (entry.getKey().isSource() && entry.getValue() != null) {
                     fromSource.put(entry.getKey().getModId(), file);
@@ -180,18 +187,22 @@ public class BlueberryModLoader implements ModLoader {
         if (!circularDependency.isEmpty()) {
             LOGGER.error("Following mods has circular dependency, cannot load: {}", ListUtils.join(circularDependency, ", "));
         }
+        scanSection.close();
+        StartupProfiler.Section classLoadingSection = StartupProfiler.start("Class loading");
         toLoad.forEach(file -> {
             try {
                 BlueberryMod mod = this.loadMod(file);
                 if (fromSource.containsKey(mod.getModId())) {
                     mod.fromSource = true;
                     mod.sourceDir = fromSource.get(mod.getModId());
+                    if (SourceModWatcher.ENABLED) watchSourceMod(mod);
                 }
             } catch (InvalidModException ex) {
                 LOGGER.error("Could not load a mod: " + ex);
                 ModLoadingErrors.add(new ModLoadingError(filePath2descriptionMap.get(file.getAbsolutePath()).getKey(), "Could not load a mod: " + ex.getMessage(), false));
             }
         });
+        classLoadingSection.close();
     }
 
     @NotNull
@@ -215,27 +226,7 @@ public class BlueberryModLoader implements ModLoader {
                 return new AbstractMap.SimpleImmutableEntry<>(description, null);
             }
             LOGGER.info("Compiling the source code of mod {} ({}) [{}]", description.getName(), description.getModId(), description.getVersion());
-            File src = description.getSourceDir() != null ? new File(description.getSourceDir()) : file;
-            if (!src.exists() || !src.isDirectory()) {
-                src = new File(file, description.getSourceDir());
-                if (!src.exists() || !src.isDirectory()) {
-                    LOGGER.warn("Source dir does not exist or not a directory, using default one");
-                    src = file;
-                }
-            }
-            File compiled = JavaCompiler.compileAll(src);
-            if (description.getInclude() != null) {
-                File include = new File(description.getInclude());
-                if (!include.exists() || !src.isDirectory()) {
-                    include = new File(file, description.getInclude());
-                    if (!include.exists() || !src.isDirectory()) {
-                        LOGGER.warn("Include dir does not exist or not a directory, skipping");
-                    }
-                }
-                if (include.exists()) {
-                    FileUtil.copy(include, compiled);
-                }
-            }
+            File compiled = compileSourceMod(description, file);
             LOGGER.info("Successfully compiled the source code of mod {} ({})", description.getName(), description.getModId());
             filePath2descriptionMap.put(compiled.getAbsolutePath(), new AbstractMap.SimpleImmutableEntry<>(description, compiled));
             descriptions.put(description.getModId(), new AbstractMap.SimpleImmutableEntry<>(description, compiled));
@@ -244,6 +235,163 @@ public class BlueberryModLoader implements ModLoader {
         return new AbstractMap.SimpleImmutableEntry<>(description, null);
     }
 
+    /**
+     * Resolves the directory of the source code of a source mod.
+     * @param description the mod description
+     * @param file the directory of the mod
+     * @return the source directory
+     */
+    @NotNull
+    File getSourceDir(@NotNull ModDescriptionFile description, @NotNull File file) {
+        File src = description.getSourceDir() != null ? new File(description.getSourceDir()) : file;
+        if (!src.exists() || !src.isDirectory()) {
+            src = new File(file, description.getSourceDir());
+            if (!src.exists() || !src.isDirectory()) {
+                LOGGER.warn("Source dir does not exist or not a directory, using default one");
+                src = file;
+            }
+        }
+        return src;
+    }
+
+    /**
+     * Compiles the source code of a source mod (only the changed files if it was compiled before), and copies the
+     * include directory into the output. The directories left over by {@link #recompileSourceMod} in the previous
+     * launch are deleted.
+     * @param description the mod description
+     * @param file the directory of the mod
+     * @return the directory containing the compiled mod
+     */
+    @NotNull
+    File compileSourceMod(@NotNull ModDescriptionFile description, @NotNull File file) throws IOException {
+        File dest = getCompiledSourceDir(description);
+        File[] staged = dest.getParentFile().listFiles((dir, name) -> name.startsWith(description.getModId() + ".reload-"));
+        if (staged != null) {
+            for (File f : staged) FileUtil.delete(f);
+        }
+        return compileSourceMod(description, file, dest);
+    }
+
+    /**
+     * Compiles the source code of a loaded source mod into a new directory. The classes of the loaded mod may still be
+     * loaded from its directory, so it is not modified. The new directory starts as a copy of the output of the
+     * compilation at startup (with a copy of its compilation state), so only the sources changed since then are
+     * recompiled.
+     * @param description the mod description
+     * @param file the directory of the mod
+     * @return the new directory containing the compiled mod
+     */
+    @NotNull
+    File recompileSourceMod(@NotNull ModDescriptionFile description, @NotNull File file) throws IOException {
+        File base = getCompiledSourceDir(description);
+        File dest = new File(base.getParentFile(), description.getModId() + ".reload-" + System.currentTimeMillis());
+        try {
+            if (base.isDirectory()) {
+                FileUtil.copy(base, dest);
+                File state = JavaCompiler.getStateFile(base);
+                if (state.isFile()) Files.copy(state.toPath(), JavaCompiler.getStateFile(dest).toPath());
+            }
+            return compileSourceMod(description, file, dest);
+        } catch (IOException | RuntimeException ex) {
+            deleteCompiledSourceMod(dest);
+            throw ex;
+        }
+    }
+
+    /**
+     * Deletes a directory created by {@link #recompileSourceMod} and its compilation state.
+     * @param compiled the directory
+     */
+    void deleteCompiledSourceMod(@NotNull File compiled) {
+        try {
+            FileUtil.delete(compiled);
+            Files.deleteIfExists(JavaCompiler.getStateFile(compiled).toPath());
+        } catch (IOException ex) {
+            LOGGER.warn("Could not delete {}", compiled.getAbsolutePath(), ex);
+        }
+    }
+
+    @NotNull
+    private File compileSourceMod(@NotNull ModDescriptionFile description, @NotNull File file, @NotNull File dest) throws IOException {
+        File src = getSourceDir(description, file);
+        File compiled = JavaCompiler.compileAll(src, dest, true);
+        if (description.getInclude() != null) {
+            File include = new File(description.getInclude());
+            if (!include.exists() || !src.isDirectory()) {
+                include = new File(file, description.getInclude());
+                if (!include.exists() || !src.isDirectory()) {
+                    LOGGER.warn("Include dir does not exist or not a directory, skipping");
+                }
+            }
+            if (include.exists()) {
+                FileUtil.copy(include, compiled);
+            }
+        }
+        return compiled;
+    }
+
+    /**
+     * Replaces a source mod with a freshly compiled version of it. The old mod is unregistered (which also unregisters
+     * its listeners and tasks), then the new one is loaded with a new {@link ModClassLoader} and goes through the
+     * whole lifecycle again. The directory of the old mod is deleted unless it is the one compiled at startup.
+     * @param oldMod the currently loaded mod
+     * @param description the (re-read) mod description
+     * @param file the directory of the mod
+     * @param compiled the directory containing the compiled mod
+     */
+    void reloadSourceMod(@NotNull BlueberryMod oldMod, @NotNull ModDescriptionFile description, @NotNull File file, @NotNull File compiled) {
+        String modId = oldMod.getModId();
+        LOGGER.info("Reloading source mod {} ({})", oldMod.getName(), modId);
+        for (BlueberryMod mod : getActiveMods()) {
+            if (mod.getDescription().getDepends().contains(modId)) {
+                LOGGER.warn("Mod {} depends on {} and will keep using its old classes until restart", mod.getModId(), modId);
+            }
+        }
+        File oldCompiled = oldMod.getFile();
+        disableMod(oldMod, true);
+        if (!oldCompiled.equals(getCompiledSourceDir(description)) && !oldCompiled.equals(compiled)) {
+            deleteCompiledSourceMod(oldCompiled);
+        }
+        Map.Entry<ModDescriptionFile, File> entry = new AbstractMap.SimpleImmutableEntry<>(description, compiled);
+        filePath2descriptionMap.put(compiled.getAbsolutePath(), entry);
+        descriptions.put(modId, entry);
+        BlueberryMod mod;
+        try {
+            mod = loadMod(compiled, file);
+        } catch (Throwable throwable) {
+            LOGGER.error("Failed to load reloaded source mod {}", modId, throwable);
+            return;
+        }
+        try {
+            mod.getStateList().add(ModState.PRE_INIT);
+            initModResources(mod);
+            mod.onPreInit();
+            mod.getStateList().add(ModState.INIT);
+            mod.onInit();
+            mod.getStateList().add(ModState.POST_INIT);
+            mod.onPostInit();
+            mod.first = false;
+            mod.getStateList().add(ModState.AVAILABLE);
+        } catch (Throwable throwable) {
+            LOGGER.error("Failed to enable reloaded source mod {}", modId, throwable);
+            mod.getStateList().add(ModState.ERRORED);
+            return;
+        }
+        Blueberry.getUtil().reloadResourcePacks();
+        LOGGER.info("Reloaded source mod {} ({})", mod.getName(), modId);
+    }
+
+    /**
+     * Returns the directory where the compiled classes of a source mod are stored. The directory is kept between
+     * launches so that the live compiler only has to recompile the changed sources.
+     * @param description the mod description
+     * @return the directory
+     */
+    @NotNull
+    public File getCompiledSourceDir(@NotNull ModDescriptionFile description) {
+        return new File(Blueberry.getGameDir(), "cache/live-compiler/" + description.getModId());
+    }
+
     @Override
     @NotNull
     public File getConfigDir() {
@@ -300,13 +448,15 @@ public class BlueberryModLoader implements ModLoader {
         if (!noDescription.isEmpty()) {
             throw new InvalidModException("Missing dependencies of the mod '" + description.getModId() + "': " + ListUtils.join(noDescription, ", "));
         }
-        try {
+        try (StartupProfiler.Section ignored = StartupProfiler.start("Class loading", description.getModId())) {
             LOGGER.info("Loading mod {} ({}) version {}", description.getName(), description.getModId(), description.getVersion());
             ModClassLoader modClassLoader = new ModClassLoader(this, this.getClass().getClassLoader(), description, file);
             loaders.add(modClassLoader);
             BlueberryMod mod = modClassLoader.mod;
             registeredMods.add(mod);
+            Blueberry.getModManager().invalidateModInfos();
             id2ModMap.put(description.getModId(), mod);
+            indexResources(mod);
             if (sourceDir != null) {
                 mod.fromSource = true;
                 mod.sourceDir = sourceDir;
@@ -360,11 +510,15 @@ public class BlueberryModLoader implements ModLoader {
             mod.onUnload();
             mod.getStateList().add(ModState.UNLOADED);
             Blueberry.getEventManager().unregisterEvents(mod);
+            Blueberry.getUtil().getServerScheduler().cancelTasks(mod);
+            Blueberry.getUtil().getClientSchedulerOptional().ifPresent(scheduler -> scheduler.cancelTasks(mod));
         } catch (Throwable throwable) {
             LOGGER.error("Failed to unload a mod {} ({}) [{}]", mod.getName(), mod.getDescription().getModId(), mod.getDescription().getVersion(), throwable);
         }
+        ModConfig.unwatchAll(mod.getModId());
         loaders.remove(mod.getClassLoader());
         if (unregister) {
+            ModConfig.unbindAll(mod.getClassLoader());
             if (mod.getClassLoader() instanceof ModClassLoader) {
                 try {
                     ((ModClassLoader) mod.getClassLoader()).close();
@@ -386,7 +540,9 @@ public class BlueberryModLoader implements ModLoader {
             this.descriptions.remove(mod.getModId());
             this.id2ModMap.remove(mod.getModId());
             this.registeredMods.remove(mod);
+            Blueberry.getModManager().invalidateModInfos();
             this.loaders.remove(mod.getClassLoader());
+            rebuildResourceIndex();
             try {
                 BlueberryResourceManager blueberryResourceManager = mod.getResourceManager();
                 ResourceManager resourceManager = Blueberry.getUtil().getResourceManager();
@@ -486,6 +642,8 @@ public class BlueberryModLoader implements ModLoader {
         descriptions.put(description.getModId(), new AbstractMap.SimpleImmutableEntry<>(description, null));
         id2ModMap.put(description.getModId(), mod);
         registeredMods.add(mod);
+        Blueberry.getModManager().invalidateModInfos();
+        indexResources(mod);
         LOGGER.info("Loaded mod {} ({}) from class {}/{}", mod.getName(), mod.getDescription().getModId(), mod.getClass().getCanonicalName(), clazz.getCanonicalName());
         return (T) mod;
     }
@@ -513,8 +671,9 @@ public class BlueberryModLoader implements ModLoader {
     @Override
     public void callPreInit() {
         LOGGER.info("Entered Pre-init phase");
+        StartupProfiler.Section section = StartupProfiler.start("Pre-init");
         getActiveMods().forEach(mod -> {
-            try {
+            try (StartupProfiler.Section ignored = StartupProfiler.start("Pre-init", mod.getModId())) {
                 mod.getStateList().add(ModState.PRE_INIT);
                 initModResources(mod);
                 mod.onPreInit();
@@ -523,13 +682,15 @@ public class BlueberryModLoader implements ModLoader {
                 Blueberry.crash(Blueberry.pauseInIde(throwable), "Pre Initialization of " + mod.getName() + " (" + mod.getDescription().getModId() + ")");
             }
         });
+        section.close();
     }
 
     @Override
     public void callInit() {
         LOGGER.info("Entered Init phase");
+        StartupProfiler.Section section = StartupProfiler.start("Init");
         getActiveMods().forEach(mod -> {
-            try {
+            try (StartupProfiler.Section ignored = StartupProfiler.start("Init", mod.getModId())) {
                 mod.getStateList().add(ModState.INIT);
                 mod.onInit();
             } catch (Throwable throwable) {
@@ -537,14 +698,16 @@ public class BlueberryModLoader implements ModLoader {
                 Blueberry.crash(throwable, "Initialization of " + mod.getName() + " (" + mod.getDescription().getModId() + ")");
             }
         });
+        section.close();
     }
 
     @Override
     public void callPostInit() {
         LOGGER.info("Entered Post-init phase");
+        StartupProfiler.Section section = StartupProfiler.start("Post-init");
         getActiveMods().forEach(mod -> {
             if (mod.getStateList().contains(ModState.AVAILABLE)) return;
-            try {
+            try (StartupProfiler.Section ignored = StartupProfiler.start("Post-init", mod.getModId())) {
                 mod.getStateList().add(ModState.POST_INIT);
                 mod.onPostInit();
                 mod.first = false;
@@ -554,6 +717,8 @@ public class BlueberryModLoader implements ModLoader {
                 Blueberry.crash(throwable, "Post Initialization of " + mod.getName() + " (" + mod.getDescription().getModId() + ")");
             }
         });
+        section.close();
+        StartupProfiler.finish();
     }
 
     @Nullable
@@ -583,6 +748,57 @@ public class BlueberryModLoader implements ModLoader {
         }
     }
 
+    /**
+     * Opens a file of the first registered mod which contains it. The files which are indexed by
+     * {@link net.blueberrymc.common.resources.ModResourceIndex} (the files at the root and under the assets and data
+     * directories) are opened through the class loader of the owning mod directly. Other names are looked up in the
+     * class loaders of all mods, like {@link ModLoader#getResourceAsStream(String)}.
+     * @param name the path of the file
+     * @return the stream, or null if no mod contains the file
+     */
+    @Nullable
+    @Override
+    public InputStream getResourceAsStream(@NotNull String name) {
+        String path = name.startsWith("/") ? name.substring(1) : name;
+        BlueberryMod owner = resourceOwners.get(path);
+        if (owner != null) {
+            InputStream in = owner.getClassLoader().getResourceAsStream(path);
+            if (in != null) return in;
+        }
+        // not indexed, e.g. a file in another directory or on the class path of a mod without ModClassLoader
+        return ModLoader.super.getResourceAsStream(name);
+    }
+
+    private void indexResources(@NotNull BlueberryMod mod) {
+        indexResources(resourceOwners, mod);
+    }
+
+    private static void indexResources(@NotNull Map<String, BlueberryMod> map, @NotNull BlueberryMod mod) {
+        for (String path : mod.getResourceIndex().getPaths()) {
+            map.putIfAbsent(path, mod);
+        }
+    }
+
+    void rebuildResourceIndex() {
+        ConcurrentHashMap<String, BlueberryMod> map = new ConcurrentHashMap<>();
+        for (BlueberryMod mod : registeredMods) {
+            indexResources(map, mod);
+        }
+        resourceOwners = map;
+    }
+
+    private void watchSourceMod(@NotNull BlueberryMod mod) {
+        if (mod.sourceDir == null) return;
+        try {
+            if (sourceModWatcher == null) {
+                sourceModWatcher = new SourceModWatcher(this);
+            }
+            sourceModWatcher.watch(mod.getModId(), mod.sourceDir, getSourceDir(mod.getDescription(), mod.sourceDir));
+        } catch (IOException ex) {
+            LOGGER.warn("Could not watch source mod {} for changes", mod.getModId(), ex);
+        }
+    }
+
     private void addToUniversalClassLoader(@NotNull URL url) {
         if (universalClassLoader == null) {
             universalClassLoader = new UniversalClassLoader(new URL[]{url});
@@ -1,6 +1,7 @@
 package net.blueberrymc.common.bml;
 
 import net.blueberrymc.client.resources.BlueberryText;
+import net.blueberrymc.client.resources.ModLanguageReloadListener;
 import net.blueberrymc.command.argument.ModIdArgument;
 import net.blueberrymc.common.Blueberry;
 import net.blueberrymc.common.BlueberryUtil;
@@ -18,6 +19,7 @@ import net.blueberrymc.common.util.DiscordRPCTaskExecutor;
 import net.blueberrymc.common.util.reflect.Ref;
 import net.blueberrymc.common.util.reflect.RefInstanceAwareField;
 import net.blueberrymc.config.ModDescriptionFile;
+import net.blueberrymc.network.BlueberryNetworkManager;
 import net.blueberrymc.registry.BlueberryRegistries;
 import net.blueberrymc.util.NameGetter;
 import net.blueberrymc.world.item.SimpleBlueberryItem;
@@ -38,6 +40,7 @@ import net.minecraft.commands.synchronization.EmptyArgumentSerializer;
 import net.minecraft.network.PacketDecoder;
 import net.minecraft.network.chat.TextComponent;
 import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.packs.resources.ReloadableResourceManager;
 import net.minecraft.world.item.CreativeModeTab;
 import net.minecraft.world.item.Item;
 import net.minecraft.world.item.Rarity;
@@ -48,7 +51,6 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.Objects;
 import java.util.Timer;
 import java.util.TimerTask;
@@ -59,6 +61,7 @@ public class InternalBlueberryMod extends BlueberryMod {
     private static final Timer clientTimer = new Timer("Async Client Blueberry Scheduler", true);
     private static final Timer serverTimer = new Timer("Async Server Blueberry Scheduler", true);
     private static final AtomicReference<String> lastScreen = new AtomicReference<>();
+    private static final AtomicBoolean languageReloadListenerRegistered = new AtomicBoolean(false);
     public static MilkFluid FLOWING_MILK;
     public static MilkFluid MILK;
     public static Block MILK_BLOCK;
@@ -97,12 +100,7 @@ public class InternalBlueberryMod extends BlueberryMod {
         this.getVisualConfig().onSave = config -> {
             this.save(config);
             reload();
-            try {
-                getConfig().saveConfig();
-                this.getLogger().info("Saved configuration");
-            } catch (IOException ex) {
-                this.getLogger().error("Could not save configuration", ex);
-            }
+            getConfig().saveConfigAsync().thenRun(() -> this.getLogger().info("Saved configuration"));
         };
         this.getVisualConfig()
                 .add(
@@ -172,6 +170,8 @@ public class InternalBlueberryMod extends BlueberryMod {
                 }
             }
         }, 50, 50);
+        serverScheduler.runTaskTimer(this, () -> BlueberryNetworkManager.tick(Side.SERVER), 1, 1);
+        Blueberry.getUtil().getClientSchedulerOptional().ifPresent(scheduler -> scheduler.runTaskTimer(this, () -> BlueberryNetworkManager.tick(Side.CLIENT), 1, 1));
     }
 
     @Override
@@ -183,6 +183,10 @@ public class InternalBlueberryMod extends BlueberryMod {
         registerFluids();
         registerBlocks();
         registerItems();
+        // the resource manager outlives the mod, so the listener is registered only once even if the mod is initialized again
+        if (Blueberry.getSide() == Side.CLIENT && languageReloadListenerRegistered.compareAndSet(false, true)) {
+            ((ReloadableResourceManager) Minecraft.getInstance().getResourceManager()).registerReloadListener(new ModLanguageReloadListener());
+        }
     }
 
     @Override
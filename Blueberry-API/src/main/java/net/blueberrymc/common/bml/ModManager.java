@@ -5,6 +5,7 @@ import net.blueberrymc.common.Blueberry;
 import net.blueberrymc.common.bml.event.Event;
 import net.blueberrymc.common.bml.event.EventManager;
 import net.blueberrymc.common.bml.event.Listener;
+import net.blueberrymc.common.resources.ModResourcePreparer;
 import net.blueberrymc.network.mod.ModInfo;
 import net.minecraft.server.packs.repository.Pack;
 import net.minecraft.server.packs.repository.PackSource;
@@ -13,10 +14,13 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.function.Consumer;
 
 public class ModManager {
+    private volatile ModList modList;
+
     @NotNull
     public EventManager getEventManager() {
         return Blueberry.getEventManager();
@@ -54,23 +58,73 @@ public class ModManager {
     }
 
     public void loadPacks(@NotNull Consumer<Pack> consumer, @NotNull Pack.PackConstructor packConstructor) {
+        List<BlueberryMod> mods = new ArrayList<>();
         for (BlueberryMod mod : Blueberry.getModLoader().getLoadedMods()) {
             try {
-                Pack pack = Pack.create(mod.getDescription().getModId(), true, () -> mod.getResourceManager().getPackResources(), packConstructor, Pack.Position.BOTTOM, PackSource.BUILT_IN);
-                if (pack != null) consumer.accept(pack);
+                mod.getResourceManager();
             } catch (IllegalArgumentException ex) {
                 break; // assume we're not finished resource manager load yet
             }
+            mods.add(mod);
+        }
+        // opening the packs reads and parses their metadata, so do it in parallel
+        List<Pack> packs = ModResourcePreparer.map(mods, mod -> {
+            // pick up files added to or removed from mods in directories since the last reload
+            mod.refreshResourceIndex();
+            return Pack.create(mod.getDescription().getModId(), true, () -> mod.getResourceManager().getPackResources(), packConstructor, Pack.Position.BOTTOM, PackSource.BUILT_IN);
+        });
+        if (Blueberry.getModLoader() instanceof BlueberryModLoader) {
+            ((BlueberryModLoader) Blueberry.getModLoader()).rebuildResourceIndex();
+        }
+        for (Pack pack : packs) {
+            if (pack != null) consumer.accept(pack);
         }
     }
 
+    /**
+     * Returns the mod ids and versions of the loaded mods, sorted by mod id and version. The list is cached until a mod
+     * is loaded or unloaded, so the same instance is returned as long as the loaded mods do not change.
+     * @return the list of mods
+     */
     @NotNull
     public List<ModInfo> getModInfos() {
-        List<ModInfo> modInfos = new ArrayList<>();
-        Blueberry.getModLoader().getLoadedMods().forEach(mod -> {
-            modInfos.add(new ModInfo(mod.getDescription().getModId(), mod.getDescription().getVersion()));
-        });
-        return ImmutableList.copyOf(modInfos);
+        return getModList().modInfos;
+    }
+
+    /**
+     * Returns the digest of the loaded mods.
+     * @return the digest
+     * @see ModInfo#digest(java.util.Collection)
+     */
+    public long getModListDigest() {
+        return getModList().digest;
+    }
+
+    @NotNull
+    private ModList getModList() {
+        ModList modList = this.modList;
+        if (modList != null) return modList;
+        // built under the lock so that an invalidation during the build is not overwritten by the old list
+        synchronized (this) {
+            if (this.modList == null) {
+                List<ModInfo> modInfos = new ArrayList<>();
+                Blueberry.getModLoader().getLoadedMods().forEach(mod -> {
+                    modInfos.add(new ModInfo(mod.getDescription().getModId(), mod.getDescription().getVersion()));
+                });
+                // sorted, so that the same mods always encode to the same handshake packet
+                modInfos.sort(Comparator.comparing((ModInfo modInfo) -> modInfo.modId).thenComparing(modInfo -> modInfo.version));
+                List<ModInfo> list = ImmutableList.copyOf(modInfos);
+                this.modList = new ModList(list, ModInfo.digest(list));
+            }
+            return this.modList;
+        }
+    }
+
+    /**
+     * Clears the cached mod list. Called when a mod is loaded or unloaded.
+     */
+    synchronized void invalidateModInfos() {
+        this.modList = null;
     }
 
     @Nullable
@@ -85,4 +139,14 @@ public class ModManager {
         }
         return null;
     }
+
+    private static final class ModList {
+        private final List<ModInfo> modInfos;
+        private final long digest;
+
+        private ModList(@NotNull List<ModInfo> modInfos, long digest) {
+            this.modInfos = modInfos;
+            this.digest = digest;
+        }
+    }
 }
@@ -0,0 +1,147 @@
+package net.blueberrymc.common.bml;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.blueberrymc.common.Blueberry;
+import net.blueberrymc.common.scheduler.AbstractBlueberryScheduler;
+import net.blueberrymc.config.ModDescriptionFile;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Watches the directories of source mods, recompiles them in the background when their files change, and reloads them
+ * on the game thread.
+ * <p>Enabled with {@code -Dblueberry.liveCompiler.hotReload=true}. This is intended for development only; other mods
+ * which depend on a reloaded mod keep references to its old classes.
+ */
+class SourceModWatcher implements Runnable {
+    static final boolean ENABLED = Boolean.getBoolean("blueberry.liveCompiler.hotReload");
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final long DEBOUNCE_MILLIS = 500;
+    private final BlueberryModLoader modLoader;
+    private final WatchService watchService;
+    private final Map<WatchKey, String> keys = new ConcurrentHashMap<>();
+    private final Map<String, File> modFiles = new ConcurrentHashMap<>();
+    private final ExecutorService compilerExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("Blueberry Live Compiler").setDaemon(true).build());
+
+    SourceModWatcher(@NotNull BlueberryModLoader modLoader) throws IOException {
+        this.modLoader = modLoader;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        Thread thread = new Thread(this, "Blueberry Source Mod Watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Starts watching the source mod.
+     * @param modId the mod id
+     * @param file the directory of the mod (the one containing mod.yml)
+     * @param sourceDir the directory of the source code
+     */
+    void watch(@NotNull String modId, @NotNull File file, @NotNull File sourceDir) throws IOException {
+        modFiles.put(modId, file);
+        registerAll(modId, file.toPath());
+        if (!sourceDir.toPath().toAbsolutePath().startsWith(file.toPath().toAbsolutePath())) {
+            registerAll(modId, sourceDir.toPath());
+        }
+        LOGGER.info("Watching source mod {} for changes", modId);
+    }
+
+    private void registerAll(@NotNull String modId, @NotNull Path root) throws IOException {
+        try (Stream<Path> stream = Files.walk(root)) {
+            for (Path dir : (Iterable<Path>) stream.filter(Files::isDirectory)::iterator) {
+                WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                keys.put(key, modId);
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                Set<String> changed = new HashSet<>();
+                WatchKey key = watchService.take();
+                // collect the events until nothing changes for a while, editors often write several times per save
+                while (key != null) {
+                    handle(key, changed);
+                    key = watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                changed.forEach(modId -> compilerExecutor.execute(() -> recompile(modId)));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException ignore) {}
+    }
+
+    private void handle(@NotNull WatchKey key, @NotNull Set<String> changed) {
+        String modId = keys.get(key);
+        if (modId == null) {
+            key.cancel();
+            return;
+        }
+        Path dir = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                changed.add(modId);
+                continue;
+            }
+            Path path = dir.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                try {
+                    registerAll(modId, path);
+                } catch (IOException ex) {
+                    LOGGER.warn("Could not watch directory {}", path, ex);
+                }
+            }
+            changed.add(modId);
+        }
+        if (!key.reset()) {
+            keys.remove(key);
+        }
+    }
+
+    private void recompile(@NotNull String modId) {
+        File file = modFiles.get(modId);
+        ModDescriptionFile description;
+        File compiled;
+        try {
+            description = modLoader.getModDescription(file);
+            LOGGER.info("Detected changes in source mod {}, recompiling", modId);
+            compiled = modLoader.recompileSourceMod(description, file);
+        } catch (Throwable throwable) {
+            LOGGER.error("Could not recompile source mod {}, keeping the old version", modId, throwable);
+            return;
+        }
+        AbstractBlueberryScheduler scheduler = Blueberry.isClient() ? Blueberry.getUtil().getClientScheduler() : Blueberry.getUtil().getServerScheduler();
+        scheduler.runTask(Objects.requireNonNull(modLoader.getModById("blueberry")), () -> {
+            BlueberryMod mod = modLoader.getModById(modId);
+            if (mod == null) {
+                LOGGER.warn("Source mod {} is no longer loaded, not reloading", modId);
+                modLoader.deleteCompiledSourceMod(compiled);
+                return;
+            }
+            modLoader.reloadSourceMod(mod, description, file, compiled);
+        });
+    }
+}
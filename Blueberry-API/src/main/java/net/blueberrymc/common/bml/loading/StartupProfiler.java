@@ -0,0 +1,218 @@
+package net.blueberrymc.common.bml.loading;
+
+import net.blueberrymc.common.Blueberry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records wall time, CPU time and allocated bytes of each startup phase and each mod in it. The report is written to
+ * {@code logs/startup-profile.txt} and summarized in the log when {@link #finish()} is called after post-init.
+ * <p>Disabled with {@code -Dblueberry.startupProfiler=false}.
+ */
+public class StartupProfiler {
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("blueberry.startupProfiler", "true"));
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+    private static final boolean CPU_TIME_SUPPORTED = THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported();
+    private static final boolean ALLOCATION_SUPPORTED = isAllocationSupported();
+    private static final int SUMMARY_SIZE = 5;
+    private static final List<Record> records = Collections.synchronizedList(new ArrayList<>());
+    private static boolean finished = false;
+
+    /**
+     * Starts a section of the phase. The section must be closed on the same thread.
+     * @param phase the phase name
+     * @param modId the mod id, or null if the section covers the whole phase
+     * @return the section
+     */
+    @NotNull
+    public static Section start(@NotNull String phase, @Nullable String modId) {
+        return new Section(phase, modId);
+    }
+
+    /**
+     * Starts a section which covers the whole phase.
+     * @param phase the phase name
+     * @return the section
+     */
+    @NotNull
+    public static Section start(@NotNull String phase) {
+        return start(phase, null);
+    }
+
+    @Contract(pure = true)
+    @NotNull
+    public static List<Record> getRecords() {
+        synchronized (records) {
+            return new ArrayList<>(records);
+        }
+    }
+
+    /**
+     * Writes the report and logs the summary. Does nothing if called more than once.
+     */
+    public static synchronized void finish() {
+        if (!ENABLED || finished) return;
+        finished = true;
+        List<Record> list = getRecords();
+        Map<String, Record> phases = new LinkedHashMap<>();
+        List<Record> mods = new ArrayList<>();
+        for (Record record : list) {
+            if (record.modId == null) {
+                phases.put(record.phase, record);
+            } else {
+                mods.add(record);
+            }
+        }
+        LOGGER.info("Startup profile:");
+        phases.values().forEach(record -> LOGGER.info("  {}", record));
+        mods.sort(Comparator.comparingLong(Record::getWallTimeNanos).reversed());
+        if (!mods.isEmpty()) {
+            LOGGER.info("Slowest mods:");
+            mods.stream().limit(SUMMARY_SIZE).forEach(record -> LOGGER.info("  {}", record));
+        }
+        File file = new File(Blueberry.getGameDir(), "logs/startup-profile.txt");
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+            try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+                writer.printf("%-16s %-32s %12s %12s %14s%n", "Phase", "Mod", "Wall (ms)", "CPU (ms)", "Alloc (KiB)");
+                for (Record record : list) {
+                    writer.printf(
+                            "%-16s %-32s %12.2f %12s %14s%n",
+                            record.phase,
+                            record.modId == null ? "<total>" : record.modId,
+                            record.wallTimeNanos / 1_000_000.0,
+                            record.cpuTimeNanos < 0 ? "n/a" : String.format("%.2f", record.cpuTimeNanos / 1_000_000.0),
+                            record.allocatedBytes < 0 ? "n/a" : Long.toString(record.allocatedBytes / 1024)
+                    );
+                }
+            }
+            LOGGER.info("Wrote startup profile to {}", file.getAbsolutePath());
+        } catch (IOException ex) {
+            LOGGER.warn("Could not write startup profile to {}", file.getAbsolutePath(), ex);
+        }
+    }
+
+    private static boolean isAllocationSupported() {
+        try {
+            if (!(THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean)) return false;
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) THREAD_MX_BEAN;
+            return bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled();
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    private static long getAllocatedBytes() {
+        if (!ALLOCATION_SUPPORTED) return -1;
+        return ((com.sun.management.ThreadMXBean) THREAD_MX_BEAN).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static long getCpuTime() {
+        return CPU_TIME_SUPPORTED ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : -1;
+    }
+
+    public static class Section implements AutoCloseable {
+        private final String phase;
+        private final String modId;
+        private final long wallTime;
+        private final long cpuTime;
+        private final long allocatedBytes;
+
+        private Section(@NotNull String phase, @Nullable String modId) {
+            this.phase = phase;
+            this.modId = modId;
+            this.wallTime = ENABLED ? System.nanoTime() : 0;
+            this.cpuTime = ENABLED ? getCpuTime() : 0;
+            this.allocatedBytes = ENABLED ? getAllocatedBytes() : 0;
+        }
+
+        @Override
+        public void close() {
+            if (!ENABLED) return;
+            long cpu = cpuTime < 0 ? -1 : getCpuTime() - cpuTime;
+            long allocated = allocatedBytes < 0 ? -1 : getAllocatedBytes() - allocatedBytes;
+            records.add(new Record(phase, modId, System.nanoTime() - wallTime, cpu, allocated));
+        }
+    }
+
+    public static class Record {
+        private final String phase;
+        private final String modId;
+        private final long wallTimeNanos;
+        private final long cpuTimeNanos;
+        private final long allocatedBytes;
+
+        public Record(@NotNull String phase, @Nullable String modId, long wallTimeNanos, long cpuTimeNanos, long allocatedBytes) {
+            this.phase = phase;
+            this.modId = modId;
+            this.wallTimeNanos = wallTimeNanos;
+            this.cpuTimeNanos = cpuTimeNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        @Contract(pure = true)
+        @NotNull
+        public String getPhase() {
+            return phase;
+        }
+
+        /**
+         * Returns the mod id, or null if this record covers the whole phase.
+         */
+        @Contract(pure = true)
+        @Nullable
+        public String getModId() {
+            return modId;
+        }
+
+        public long getWallTimeNanos() {
+            return wallTimeNanos;
+        }
+
+        /**
+         * Returns the CPU time of the thread, or -1 if unsupported by the JVM.
+         */
+        public long getCpuTimeNanos() {
+            return cpuTimeNanos;
+        }
+
+        /**
+         * Returns the bytes allocated by the thread, or -1 if unsupported by the JVM.
+         */
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        @NotNull
+        @Override
+        public String toString() {
+            return String.format(
+                    "%s%s: %d ms wall, %s cpu, %s allocated",
+                    phase,
+                    modId == null ? "" : " [" + modId + "]",
+                    TimeUnit.NANOSECONDS.toMillis(wallTimeNanos),
+                    cpuTimeNanos < 0 ? "n/a" : TimeUnit.NANOSECONDS.toMillis(cpuTimeNanos) + " ms",
+                    allocatedBytes < 0 ? "n/a" : (allocatedBytes / 1024) + " KiB"
+            );
+        }
+    }
+}
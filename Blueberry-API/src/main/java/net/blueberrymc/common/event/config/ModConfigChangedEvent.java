@@ -0,0 +1,58 @@
+package net.blueberrymc.common.event.config;
+
+import com.google.common.collect.ImmutableSet;
+import net.blueberrymc.common.bml.event.Event;
+import net.blueberrymc.common.bml.event.HandlerList;
+import net.blueberrymc.config.ModConfig;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Set;
+
+/**
+ * Called on the main thread after a watched {@link ModConfig} has been reloaded because its file was changed.
+ * @see ModConfig#setWatching(boolean)
+ */
+public class ModConfigChangedEvent extends Event {
+    private static final HandlerList handlerList = new HandlerList();
+
+    protected final ModConfig config;
+    protected final Set<String> changedPaths;
+
+    public ModConfigChangedEvent(@NotNull ModConfig config, @NotNull Set<String> changedPaths) {
+        this.config = config;
+        this.changedPaths = ImmutableSet.copyOf(changedPaths);
+    }
+
+    @NotNull
+    public ModConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Returns the paths of the values which were added, removed or modified. Lists are compared as a whole.
+     * @return the changed paths, separated by '.'
+     */
+    @NotNull
+    public Set<String> getChangedPaths() {
+        return changedPaths;
+    }
+
+    /**
+     * Checks if the value at the path, any value below it, or any value above it was changed.
+     * @param path the path
+     * @return true if changed
+     */
+    public boolean isChanged(@NotNull String path) {
+        if (changedPaths.contains(path)) return true;
+        String prefix = path + ".";
+        for (String changed : changedPaths) {
+            if (changed.startsWith(prefix) || path.startsWith(changed + ".")) return true;
+        }
+        return false;
+    }
+
+    @NotNull
+    public static HandlerList getHandlerList() {
+        return handlerList;
+    }
+}
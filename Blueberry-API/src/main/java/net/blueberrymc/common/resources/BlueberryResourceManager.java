@@ -2,21 +2,22 @@ package net.blueberrymc.common.resources;
 
 import net.blueberrymc.common.bml.BlueberryMod;
 import net.minecraft.DetectedVersion;
+import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.packs.FilePackResources;
 import net.minecraft.server.packs.FolderPackResources;
 import net.minecraft.server.packs.PackResources;
 import net.minecraft.server.packs.PackType;
+import net.minecraft.server.packs.ResourcePackFileNotFoundException;
 import net.minecraft.server.packs.resources.FallbackResourceManager;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 
 import java.io.ByteArrayInputStream;
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Set;
+import java.util.function.Predicate;
 
 public class BlueberryResourceManager extends FallbackResourceManager {
     @NotNull private final BlueberryMod mod;
@@ -33,36 +34,31 @@ public class BlueberryResourceManager extends FallbackResourceManager {
                     return "Mod Resources for " + mod.getName() + " (Folder)";
                 }
 
-                @Nullable
+                @NotNull
                 @Override
                 protected InputStream getResource(@NotNull String s) throws IOException {
                     if (s.equals("pack.mcmeta")) {
                         return createMetadata(mod);
                     }
-                    InputStream in = mod.getClass().getResourceAsStream("/" + s);
-                    if (in == null) in = mod.getClassLoader().getResourceAsStream("/" + s);
-                    if (in == null) {
-                        try {
-                            File file = new File(mod.getClass().getProtectionDomain().getCodeSource().getLocation().toURI());
-                            if (file.exists() && file.isDirectory()) {
-                                File entry = new File(file, s);
-                                if (entry.exists() && entry.isFile()) {
-                                    in = new FileInputStream(entry);
-                                }
-                            }
-                        } catch (URISyntaxException ignore) {}
-                    }
-                    if (in != null) return in;
+                    if (!mod.getResourceIndex().contains(s)) throw new ResourcePackFileNotFoundException(mod.getFile(), s);
                     return super.getResource(s);
                 }
 
                 @Override
                 public boolean hasResource(@NotNull String s) {
-                    try {
-                        return getResource(s) != null;
-                    } catch (IOException exception) {
-                        return false;
-                    }
+                    return s.equals("pack.mcmeta") || mod.getResourceIndex().contains(s);
+                }
+
+                @NotNull
+                @Override
+                public Set<String> getNamespaces(@NotNull PackType packType) {
+                    return mod.getResourceIndex().getNamespaces(packType);
+                }
+
+                @NotNull
+                @Override
+                public Collection<ResourceLocation> getResources(@NotNull PackType packType, @NotNull String namespace, @NotNull String path, int maxDepth, @NotNull Predicate<String> filter) {
+                    return mod.getResourceIndex().getResources(packType, namespace, path, maxDepth, filter);
                 }
             };
         } else {
@@ -73,25 +69,31 @@ public class BlueberryResourceManager extends FallbackResourceManager {
                     return "Mod Resources for " + mod.getName() + " (File)";
                 }
 
-                @Nullable
+                @NotNull
                 @Override
                 protected InputStream getResource(@NotNull String s) throws IOException {
                     if (s.equals("pack.mcmeta")) {
                         return createMetadata(mod);
                     }
-                    InputStream in = mod.getClass().getResourceAsStream("/" + s);
-                    if (in == null) in = mod.getClassLoader().getResourceAsStream("/" + s);
-                    if (in != null) return in;
+                    if (!mod.getResourceIndex().contains(s)) throw new ResourcePackFileNotFoundException(mod.getFile(), s);
                     return super.getResource(s);
                 }
 
                 @Override
                 public boolean hasResource(@NotNull String s) {
-                    try {
-                        return getResource(s) != null;
-                    } catch (IOException exception) {
-                        return false;
-                    }
+                    return s.equals("pack.mcmeta") || mod.getResourceIndex().contains(s);
+                }
+
+                @NotNull
+                @Override
+                public Set<String> getNamespaces(@NotNull PackType packType) {
+                    return mod.getResourceIndex().getNamespaces(packType);
+                }
+
+                @NotNull
+                @Override
+                public Collection<ResourceLocation> getResources(@NotNull PackType packType, @NotNull String namespace, @NotNull String path, int maxDepth, @NotNull Predicate<String> filter) {
+                    return mod.getResourceIndex().getResources(packType, namespace, path, maxDepth, filter);
                 }
             };
         }
@@ -115,6 +117,15 @@ public class BlueberryResourceManager extends FallbackResourceManager {
         return packResources;
     }
 
+    /**
+     * Returns the current index of the entries in the mod file.
+     * @see BlueberryMod#getResourceIndex()
+     */
+    @NotNull
+    public ModResourceIndex getIndex() {
+        return mod.getResourceIndex();
+    }
+
     @NotNull
     public BlueberryMod getMod() {
         return mod;
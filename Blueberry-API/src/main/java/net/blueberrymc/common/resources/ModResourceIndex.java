@@ -0,0 +1,161 @@
+package net.blueberrymc.common.resources;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import net.minecraft.ResourceLocationException;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.packs.PackType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Index of the resource entries of a mod file, built once so that existence checks and listings do not have to touch
+ * the file system or the jar.
+ */
+public class ModResourceIndex {
+    private static final Logger LOGGER = LogManager.getLogger();
+    private final Set<String> paths;
+    // PackType -> namespace -> paths relative to the namespace directory
+    private final Map<PackType, Map<String, Set<String>>> entries;
+
+    private ModResourceIndex(@NotNull Set<String> paths) {
+        this.paths = ImmutableSet.copyOf(paths);
+        Map<PackType, Map<String, Set<String>>> entries = new HashMap<>();
+        for (PackType type : PackType.values()) {
+            String prefix = type.getDirectory() + "/";
+            Map<String, Set<String>> namespaces = new HashMap<>();
+            for (String path : paths) {
+                if (!path.startsWith(prefix)) continue;
+                int slash = path.indexOf('/', prefix.length());
+                if (slash == -1) continue;
+                namespaces.computeIfAbsent(path.substring(prefix.length(), slash), s -> new HashSet<>()).add(path.substring(slash + 1));
+            }
+            ImmutableMap.Builder<String, Set<String>> builder = ImmutableMap.builder();
+            namespaces.forEach((namespace, set) -> builder.put(namespace, ImmutableSet.copyOf(set)));
+            entries.put(type, builder.build());
+        }
+        this.entries = Collections.unmodifiableMap(entries);
+    }
+
+    /**
+     * Builds the index of a directory or a zip/jar file. Only the files at the root and the files under the
+     * directories of {@link PackType}s are indexed.
+     * @param file the directory or file
+     * @return the index
+     */
+    @NotNull
+    public static ModResourceIndex build(@NotNull File file) {
+        Set<String> paths = new HashSet<>();
+        try {
+            if (file.isDirectory()) {
+                Path root = file.toPath();
+                try (Stream<Path> stream = Files.walk(root)) {
+                    stream.filter(Files::isRegularFile).forEach(p -> addPath(paths, root.relativize(p).toString().replace(File.separatorChar, '/')));
+                }
+            } else {
+                try (ZipFile zip = new ZipFile(file)) {
+                    Enumeration<? extends ZipEntry> e = zip.entries();
+                    while (e.hasMoreElements()) {
+                        ZipEntry entry = e.nextElement();
+                        if (!entry.isDirectory()) addPath(paths, entry.getName());
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            LOGGER.warn("Could not index resources of {}", file.getAbsolutePath(), ex);
+        }
+        return new ModResourceIndex(paths);
+    }
+
+    private static void addPath(@NotNull Set<String> paths, @NotNull String path) {
+        if (path.indexOf('/') == -1) {
+            paths.add(path);
+            return;
+        }
+        for (PackType type : PackType.values()) {
+            if (path.startsWith(type.getDirectory() + "/")) {
+                paths.add(path);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Checks if the file exists.
+     * @param path the path relative to the root of the pack
+     * @return true if the file exists
+     */
+    @Contract(pure = true)
+    public boolean contains(@NotNull String path) {
+        return paths.contains(path);
+    }
+
+    /**
+     * Returns all indexed files, relative to the root of the pack and separated by '/'. These are the files at the root
+     * and the files under the directories of {@link PackType}s.
+     * @return the paths
+     */
+    @Contract(pure = true)
+    @NotNull
+    public Set<String> getPaths() {
+        return paths;
+    }
+
+    @Contract(pure = true)
+    @NotNull
+    public Set<String> getNamespaces(@NotNull PackType type) {
+        return entries.get(type).keySet();
+    }
+
+    /**
+     * Lists the resources like {@link net.minecraft.server.packs.PackResources#getResources(PackType, String, String, int, Predicate)}.
+     * @param type the pack type
+     * @param namespace the namespace
+     * @param path the directory to list
+     * @param maxDepth how many levels of subdirectories to include
+     * @param filter the filter for file names
+     * @return the resources
+     */
+    @NotNull
+    public Collection<ResourceLocation> getResources(@NotNull PackType type, @NotNull String namespace, @NotNull String path, int maxDepth, @NotNull Predicate<String> filter) {
+        Set<String> set = entries.get(type).get(namespace);
+        if (set == null) return Collections.emptyList();
+        String prefix = path.isEmpty() || path.endsWith("/") ? path : path + "/";
+        List<ResourceLocation> list = new ArrayList<>();
+        for (String entry : set) {
+            if (!entry.startsWith(prefix) || entry.endsWith(".mcmeta")) continue;
+            int depth = 0;
+            for (int i = prefix.length(); i < entry.length(); i++) {
+                if (entry.charAt(i) == '/') depth++;
+            }
+            if (depth > maxDepth) continue;
+            if (!filter.test(entry.substring(entry.lastIndexOf('/') + 1))) continue;
+            try {
+                list.add(new ResourceLocation(namespace, entry));
+            } catch (ResourceLocationException ex) {
+                LOGGER.warn("Invalid path in namespace {}: {}", namespace, entry);
+            }
+        }
+        return list;
+    }
+}
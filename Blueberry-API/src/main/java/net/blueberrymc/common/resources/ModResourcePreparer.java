@@ -0,0 +1,41 @@
+package net.blueberrymc.common.resources;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Runs the preparation of mod resources (listing entries, parsing and decoding files) in parallel, so that only the
+ * application of the results has to happen on the game thread.
+ */
+public class ModResourcePreparer {
+    private static final ForkJoinPool POOL = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), pool -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("Blueberry Resource Preparer-" + thread.getPoolIndex());
+        thread.setContextClassLoader(ModResourcePreparer.class.getClassLoader());
+        return thread;
+    }, null, false);
+
+    @NotNull
+    public static ForkJoinPool getPool() {
+        return POOL;
+    }
+
+    /**
+     * Applies the function to each element in parallel, and waits for all of them.
+     * @param collection the elements
+     * @param function the function
+     * @param <T> the type of the elements
+     * @param <R> the type of the results
+     * @return the results, in the iteration order of the collection
+     */
+    @NotNull
+    public static <T, R> List<R> map(@NotNull Collection<T> collection, @NotNull Function<T, R> function) {
+        return POOL.submit(() -> collection.parallelStream().map(function).collect(Collectors.toList())).join();
+    }
+}
@@ -153,6 +153,16 @@ public abstract class AbstractBlueberryScheduler {
         getTask(id).cancel();
     }
 
+    /**
+     * Cancels all tasks owned by the mod.
+     * @param mod the mod
+     */
+    public void cancelTasks(@NotNull BlueberryMod mod) {
+        tasks.values().forEach(task -> {
+            if (task.getOwner() == mod) task.cancel();
+        });
+    }
+
     /**
      * @deprecated internal usage only
      */
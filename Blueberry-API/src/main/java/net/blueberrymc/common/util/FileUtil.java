@@ -6,6 +6,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.Comparator;
 
 public class FileUtil {
@@ -32,7 +33,7 @@ public class FileUtil {
                         // if file
                         File target = new File(dest, path.relativize(f.toPath()).toString());
                         try {
-                            Files.copy(f.toPath(), target.toPath());
+                            Files.copy(f.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
                         } catch (IOException ignored) {
                         }
                     }
@@ -2,6 +2,7 @@ package net.blueberrymc.common.util;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.util.HashSet;
 import java.util.List;
 
 public class ListUtils {
@@ -20,14 +21,15 @@ public class ListUtils {
         return sb.toString();
     }
 
+    /**
+     * Checks whether both lists contain the same elements, in any order.
+     * @param server the list of the server
+     * @param client the list of the client
+     * @return true if the lists are compatible
+     */
     public static <T> boolean isCompatible(@NotNull List<T> server, @NotNull List<T> client) {
-        if (server.size() > client.size()) return false;
-        int matches = 0;
-        for (T t : server) {
-            for (T t1 : client) {
-                if (t.equals(t1)) matches++;
-            }
-        }
-        return matches == server.size() && matches >= client.size();
+        if (server == client) return true;
+        if (server.size() != client.size()) return false;
+        return new HashSet<>(server).equals(new HashSet<>(client));
     }
 }
@@ -0,0 +1,227 @@
+package net.blueberrymc.common.util.tools.liveCompiler;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Remembers which classes each source file produced and which classes they depend on, so that only the changed
+ * sources and their dependents have to be recompiled.
+ */
+class CompilationState {
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    // keyed by the path of the source file relative to the source root, separated by '/'
+    private Map<String, SourceEntry> sources = new HashMap<>();
+    // the classpath which the sources were compiled against
+    private String classpathHash;
+    // the other files copied into the output, relative to the source root, separated by '/'
+    private Set<String> resources = new HashSet<>();
+
+    @NotNull
+    static CompilationState load(@NotNull File file) {
+        if (!file.isFile()) return new CompilationState();
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            CompilationState state = GSON.fromJson(reader, CompilationState.class);
+            if (state != null && state.sources != null) {
+                if (state.resources == null) state.resources = new HashSet<>();
+                return state;
+            }
+        } catch (IOException | JsonParseException ex) {
+            LOGGER.warn("Could not read compilation state {}, recompiling everything", file.getAbsolutePath(), ex);
+        }
+        return new CompilationState();
+    }
+
+    void save(@NotNull File file) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            GSON.toJson(this, writer);
+        }
+    }
+
+    @NotNull
+    Map<String, SourceEntry> getSources() {
+        return sources;
+    }
+
+    @NotNull
+    Set<String> getResources() {
+        return resources;
+    }
+
+    void setResources(@NotNull Set<String> resources) {
+        this.resources = resources;
+    }
+
+    @Nullable
+    String getClasspathHash() {
+        return classpathHash;
+    }
+
+    void setClasspathHash(@NotNull String classpathHash) {
+        this.classpathHash = classpathHash;
+    }
+
+    @NotNull
+    static String hash(@NotNull File file) throws IOException {
+        return hash(Files.readAllBytes(file.toPath()));
+    }
+
+    /**
+     * Hashes the paths, sizes and modification times of the classpath entries. A changed dependency jar or Minecraft
+     * version changes the hash, and the sources have to be compiled against it again.
+     * @param classpath the classpath entries
+     * @return the hash
+     */
+    @NotNull
+    static String hashClasspath(@NotNull Collection<String> classpath) {
+        List<String> entries = new ArrayList<>(classpath);
+        Collections.sort(entries);
+        StringBuilder sb = new StringBuilder();
+        for (String entry : entries) {
+            File file = new File(entry);
+            sb.append(file.getAbsolutePath()).append('\0').append(file.length()).append('\0').append(file.lastModified()).append('\n');
+        }
+        return hash(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @NotNull
+    private static String hash(@NotNull byte@NotNull[] bytes) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(bytes);
+            StringBuilder sb = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Checks whether the class file declares constant fields. javac copies their values into the classes which use
+     * them without referencing the declaring class, so the dependents cannot be found from the class files.
+     * @param bytes the class file
+     * @return true if the class has a field with a ConstantValue attribute
+     */
+    static boolean hasConstants(@NotNull byte@NotNull[] bytes) {
+        boolean[] constants = new boolean[1];
+        new ClassReader(bytes).accept(new ClassVisitor(Opcodes.ASM9) {
+            @Nullable
+            @Override
+            public FieldVisitor visitField(int access, @NotNull String name, @NotNull String descriptor, @Nullable String signature, @Nullable Object value) {
+                if (value != null) constants[0] = true;
+                return null;
+            }
+        }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        return constants[0];
+    }
+
+    /**
+     * Collects the internal names of all classes referenced by the class file.
+     * @param bytes the class file
+     * @return the referenced classes
+     */
+    @NotNull
+    static Set<String> collectDependencies(@NotNull byte@NotNull[] bytes) {
+        Set<String> dependencies = new HashSet<>();
+        ClassReader reader = new ClassReader(bytes);
+        char[] buf = new char[reader.getMaxStringLength()];
+        for (int i = 1; i < reader.getItemCount(); i++) {
+            int offset = reader.getItem(i);
+            if (offset == 0) continue; // second slot of long or double
+            int tag = reader.readByte(offset - 1);
+            if (tag == CONSTANT_CLASS) {
+                // array classes are stored as descriptors, everything else as internal names
+                String name = reader.readClass(offset, buf);
+                addType(dependencies, name.startsWith("[") ? Type.getType(name) : Type.getObjectType(name));
+            } else if (tag == CONSTANT_NAME_AND_TYPE) {
+                addDescriptor(dependencies, reader.readUTF8(offset + 2, buf));
+            } else if (tag == CONSTANT_METHOD_TYPE) {
+                addDescriptor(dependencies, reader.readUTF8(offset, buf));
+            }
+        }
+        reader.accept(new ClassVisitor(Opcodes.ASM9) {
+            @Nullable
+            @Override
+            public FieldVisitor visitField(int access, @NotNull String name, @NotNull String descriptor, @Nullable String signature, @Nullable Object value) {
+                addDescriptor(dependencies, descriptor);
+                return null;
+            }
+
+            @Nullable
+            @Override
+            public MethodVisitor visitMethod(int access, @NotNull String name, @NotNull String descriptor, @Nullable String signature, @Nullable String@Nullable[] exceptions) {
+                addDescriptor(dependencies, descriptor);
+                return null;
+            }
+        }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        return dependencies;
+    }
+
+    private static void addDescriptor(@NotNull Set<String> dependencies, @Nullable String descriptor) {
+        if (descriptor == null) return;
+        try {
+            Type type = Type.getType(descriptor);
+            if (type.getSort() == Type.METHOD) {
+                addType(dependencies, type.getReturnType());
+                for (Type argumentType : type.getArgumentTypes()) {
+                    addType(dependencies, argumentType);
+                }
+            } else {
+                addType(dependencies, type);
+            }
+        } catch (IllegalArgumentException ignore) {}
+    }
+
+    private static void addType(@NotNull Set<String> dependencies, @NotNull Type type) {
+        if (type.getSort() == Type.ARRAY) type = type.getElementType();
+        if (type.getSort() == Type.OBJECT) dependencies.add(type.getInternalName());
+    }
+
+    static class SourceEntry {
+        String hash;
+        // internal names of the classes compiled from the source
+        Set<String> classes = new HashSet<>();
+        // internal names of the classes referenced by the classes above
+        Set<String> dependencies = new HashSet<>();
+        // whether the classes above declare constants, which may have been inlined into other classes
+        boolean constants;
+
+        SourceEntry(@NotNull String hash) {
+            this.hash = hash;
+        }
+    }
+}
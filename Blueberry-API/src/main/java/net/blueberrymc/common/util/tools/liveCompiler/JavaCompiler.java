@@ -3,7 +3,6 @@ package net.blueberrymc.common.util.tools.liveCompiler;
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.JsonDeserializer;
 import com.mojang.blaze3d.vertex.PoseStack;
 import com.mojang.bridge.game.GameVersion;
@@ -12,6 +11,7 @@ import com.mojang.datafixers.types.Type;
 import it.unimi.dsi.fastutil.floats.Float2FloatOpenHashMap;
 import net.blueberrymc.common.Blueberry;
 import net.blueberrymc.common.util.ClasspathUtil;
+import net.blueberrymc.common.util.FileUtil;
 import net.blueberrymc.util.NoopPrintStream;
 import net.minecraft.SharedConstants;
 import net.minecraft.launchwrapper.Launch;
@@ -28,25 +28,34 @@ import org.objectweb.asm.ClassVisitor;
 import org.spongepowered.asm.mixin.Mixin;
 
 import javax.annotation.Nonnull;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
 import javax.tools.ToolProvider;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class JavaCompiler {
     private static final Logger LOGGER = LogManager.getLogger();
+    private static final String STATE_FILE_SUFFIX = ".compiler-state.json";
     public static final Set<String> classpath;
 
     static {
@@ -73,7 +82,7 @@ public class JavaCompiler {
             e.printStackTrace();
         }
         classpath = ImmutableSet.copyOf(cp);
-        LOGGER.info("Classpath for compiler: " + Joiner.on(";").join(classpath));
+        LOGGER.info("Classpath for compiler: " + Joiner.on(File.pathSeparator).join(classpath));
     }
 
     /**
@@ -87,7 +96,7 @@ public class JavaCompiler {
         List<String> args = new ArrayList<>();
         if (!classpath.isEmpty()) {
             args.add("-cp");
-            args.add(Joiner.on(";").join(classpath) + ";" + root.getAbsolutePath());
+            args.add(Joiner.on(File.pathSeparator).join(classpath) + File.pathSeparator + root.getAbsolutePath());
         }
         if (dest != null) {
             args.add("-d");
@@ -100,77 +109,208 @@ public class JavaCompiler {
     }
 
     /**
-     * Compiles all .java files in specified directory, or just compiles a single .java file.
+     * Compiles all .java files in specified directory, or just compiles a single .java file. Compiled classes and
+     * other files are written to a new temporary directory.
      * @param file the file(s) to compile
      */
     @NotNull
     public static File compileAll(@NotNull File file) throws IOException {
-        if (!file.isDirectory() && !file.getName().endsWith(".java")) throw new IllegalArgumentException("Illegal file name (not a directory nor .java file: " + file.getAbsolutePath());
-        Path path = file.toPath();
         File tmp = Files.createTempDirectory("blueberry-live-compiler-").toFile();
         tmp.deleteOnExit();
-        AtomicReference<Throwable> throwable = new AtomicReference<>();
-        int nThreads = Math.max(4, Runtime.getRuntime().availableProcessors()) * 2;
-        ExecutorService compilerExecutor = Executors.newFixedThreadPool(nThreads, new ThreadFactoryBuilder().setNameFormat("Blueberry Mod Compiler #%d").build());
-        LOGGER.info("Compiling the source code using up to " + nThreads + " threads");
-        AtomicBoolean first = new AtomicBoolean(true);
-        Files.walk(file.toPath())
-                .map(Path::toFile)
-                .forEach(f -> {
-                    if (throwable.get() != null) return;
-                    if (f.isDirectory()) {
-                        // if dir
-                        File target = new File(tmp, path.relativize(f.toPath()).toString());
-                        if (!target.mkdirs()) {
-                            LOGGER.warn("Failed to create directory {} -> {}", f.getAbsolutePath(), target.getAbsolutePath());
-                        } else {
-                            LOGGER.debug("Created directory {} -> {}", f.getAbsolutePath(), target.getAbsolutePath());
-                        }
-                    } else {
-                        // if file
-                        if (f.getName().endsWith(".java")) {
-                            Runnable doCompile = () -> {
-                                LOGGER.info("Compiling: " + path.relativize(f.toPath()));
-                                compile(file, f, tmp);
-                                String rel = path.relativize(f.toPath()).toString().replaceAll("(.*)\\.java", "$1.class");
-                                if (!new File(tmp, rel).exists()) {
-                                    throwable.set(new RuntimeException("Compilation failed: " + rel));
-                                    return;
-                                }
-                                LOGGER.debug("Compiled {} -> {}", f.getAbsolutePath(), tmp.getAbsolutePath());
-                            };
-                            if (first.get()) { // to prevent race condition
-                                first.set(false);
-                                doCompile.run();
-                            } else {
-                                compilerExecutor.submit(() -> {
-                                    if (throwable.get() != null) return;
-                                    doCompile.run();
-                                });
-                            }
-                        } else {
-                            File dest = new File(tmp, path.relativize(f.toPath()).toString());
-                            try {
-                                Files.copy(f.toPath(), dest.toPath());
-                                LOGGER.debug("Copied {} -> {}", f.getAbsolutePath(), dest.getAbsolutePath());
-                            } catch (IOException ex) {
-                                LOGGER.warn("Failed to copy {} -> {}", f.getAbsolutePath(), dest.getAbsolutePath(), ex);
-                            }
+        return compileAll(file, tmp, false);
+    }
+
+    /**
+     * Compiles all .java files in specified directory, or just compiles a single .java file, using a single compiler
+     * task. Other files are copied into the destination directory.
+     * <p>If incremental is true and the state of the previous compilation exists (see {@link #getStateFile(File)}), only
+     * the sources that have changed since then and the sources that depend on the classes they produced, directly or
+     * indirectly, are recompiled, and the files which were removed from the source directory are removed from the
+     * destination directory. Otherwise, the destination directory is cleared and everything is compiled.
+     * @param file the file(s) to compile
+     * @param dest the destination directory
+     * @param incremental whether to recompile only the changed sources
+     * @return the destination directory
+     */
+    @NotNull
+    public static File compileAll(@NotNull File file, @NotNull File dest, boolean incremental) throws IOException {
+        if (!file.isDirectory() && !file.getName().endsWith(".java")) throw new IllegalArgumentException("Illegal file name (not a directory nor .java file: " + file.getAbsolutePath());
+        Path path = file.toPath().toAbsolutePath().normalize();
+        Path root = file.isDirectory() ? path : path.getParent();
+        File stateFile = getStateFile(dest);
+        CompilationState state = incremental ? CompilationState.load(stateFile) : new CompilationState();
+        String classpathHash = CompilationState.hashClasspath(classpath);
+        if (!classpathHash.equals(state.getClasspathHash())) {
+            if (!state.getSources().isEmpty()) LOGGER.info("Classpath has changed, recompiling everything in {}", file.getAbsolutePath());
+            state = new CompilationState();
+        }
+        state.setClasspathHash(classpathHash);
+        if (state.getSources().isEmpty()) {
+            FileUtil.delete(dest);
+        }
+        Files.createDirectories(dest.toPath());
+        Map<String, File> sources = new HashMap<>();
+        Set<String> resources = new HashSet<>();
+        try (Stream<Path> stream = Files.walk(path)) {
+            for (Path p : (Iterable<Path>) stream::iterator) {
+                if (Files.isDirectory(p)) continue;
+                String rel = root.relativize(p.normalize()).toString().replace(File.separatorChar, '/');
+                if (rel.endsWith(".java")) {
+                    sources.put(rel, p.toFile());
+                } else if (file.isDirectory()) {
+                    resources.add(rel);
+                    Path target = dest.toPath().resolve(rel);
+                    Files.createDirectories(target.getParent());
+                    Files.copy(p, target, StandardCopyOption.REPLACE_EXISTING);
+                    LOGGER.debug("Copied {} -> {}", p, target);
+                }
+            }
+        }
+        boolean resourcesChanged = !resources.equals(state.getResources());
+        for (String rel : state.getResources()) {
+            if (!resources.contains(rel)) {
+                Files.deleteIfExists(dest.toPath().resolve(rel));
+                LOGGER.debug("Deleted {}", rel);
+            }
+        }
+        state.setResources(resources);
+        // find the sources that have changed or were removed since the last compilation
+        Map<String, String> hashes = new HashMap<>();
+        Set<String> toCompile = new HashSet<>();
+        Set<String> stale = new HashSet<>();
+        for (Map.Entry<String, File> entry : sources.entrySet()) {
+            String hash = CompilationState.hash(entry.getValue());
+            hashes.put(entry.getKey(), hash);
+            CompilationState.SourceEntry previous = state.getSources().get(entry.getKey());
+            if (previous == null || !previous.hash.equals(hash)) {
+                toCompile.add(entry.getKey());
+            }
+        }
+        for (String rel : state.getSources().keySet()) {
+            if (!sources.containsKey(rel)) stale.add(rel);
+        }
+        // then the sources which depend on the classes of them
+        Set<String> affectedClasses = new HashSet<>();
+        boolean constantsChanged = false;
+        for (String rel : toCompile) {
+            CompilationState.SourceEntry previous = state.getSources().get(rel);
+            if (previous == null) continue;
+            affectedClasses.addAll(previous.classes);
+            constantsChanged |= previous.constants;
+        }
+        for (String rel : stale) {
+            CompilationState.SourceEntry previous = state.getSources().get(rel);
+            affectedClasses.addAll(previous.classes);
+            constantsChanged |= previous.constants;
+        }
+        if (constantsChanged) {
+            // the dependents of inlined constants are unknown
+            toCompile.addAll(sources.keySet());
+        } else {
+            // the classes of a recompiled dependent change as well (e.g. the members inherited by its subclasses), so
+            // their dependents are recompiled too, until no more sources are added
+            boolean added = !affectedClasses.isEmpty();
+            while (added) {
+                added = false;
+                for (Map.Entry<String, CompilationState.SourceEntry> entry : state.getSources().entrySet()) {
+                    String rel = entry.getKey();
+                    if (toCompile.contains(rel) || stale.contains(rel)) continue;
+                    for (String dependency : entry.getValue().dependencies) {
+                        if (affectedClasses.contains(dependency)) {
+                            toCompile.add(rel);
+                            affectedClasses.addAll(entry.getValue().classes);
+                            added = true;
+                            break;
                         }
                     }
-                });
-        compilerExecutor.shutdown();
-        try {
-            if (!compilerExecutor.awaitTermination(5L, TimeUnit.MINUTES)) {
-                LOGGER.warn("Timed out compilation. Some compiled files may be missing.");
+                }
+            }
+        }
+        stale.addAll(toCompile);
+        if (toCompile.isEmpty() && stale.isEmpty()) {
+            if (incremental && resourcesChanged) {
+                state.save(stateFile);
+            }
+            LOGGER.info("Compiled classes in {} are up to date", dest.getAbsolutePath());
+            return dest;
+        }
+        LOGGER.info("Compiling {} of {} source files in {}", toCompile.size(), sources.size(), file.getAbsolutePath());
+        // remove the old classes first, so the sources cannot compile against classes which no longer exist
+        for (String rel : stale) {
+            CompilationState.SourceEntry previous = state.getSources().remove(rel);
+            if (previous == null) continue;
+            for (String className : previous.classes) {
+                Files.deleteIfExists(new File(dest, className + ".class").toPath());
             }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
         }
-        if (throwable.get() != null) {
-            if (throwable.get() instanceof RuntimeException) throw (RuntimeException) throwable.get();
-            throw new RuntimeException(throwable.get());
+        if (incremental) {
+            // if the compilation fails, the removed sources are compiled again next time
+            state.save(stateFile);
+        }
+        Map<String, MemoryFileManager.OutputClass> outputs = toCompile.isEmpty() ? Collections.emptyMap() : compileSources(dest, toCompile.stream().map(sources::get).collect(Collectors.toList()));
+        for (String rel : toCompile) {
+            state.getSources().put(rel, new CompilationState.SourceEntry(hashes.get(rel)));
+        }
+        for (MemoryFileManager.OutputClass output : outputs.values()) {
+            String internalName = output.getClassName().replace('.', '/');
+            byte[] bytes = output.getBytes();
+            File target = new File(dest, internalName + ".class");
+            Files.createDirectories(target.getParentFile().toPath());
+            Files.write(target.toPath(), bytes);
+            if (output.getSource() == null) continue;
+            String rel = root.relativize(Paths.get(output.getSource()).toAbsolutePath().normalize()).toString().replace(File.separatorChar, '/');
+            CompilationState.SourceEntry entry = state.getSources().get(rel);
+            if (entry == null) continue;
+            entry.classes.add(internalName);
+            entry.dependencies.addAll(CompilationState.collectDependencies(bytes));
+            entry.constants |= CompilationState.hasConstants(bytes);
+        }
+        if (incremental) {
+            state.save(stateFile);
+        }
+        LOGGER.info("Compiled {} classes into {}", outputs.size(), dest.getAbsolutePath());
+        return dest;
+    }
+
+    /**
+     * Returns the file which stores the state of the incremental compilation into the directory. It is stored next to
+     * the directory, so that it is not part of the output.
+     * @param dest the destination directory
+     * @return the state file
+     */
+    @NotNull
+    public static File getStateFile(@NotNull File dest) {
+        File dir = dest.getAbsoluteFile();
+        return new File(dir.getParentFile(), dir.getName() + STATE_FILE_SUFFIX);
+    }
+
+    @NotNull
+    private static Map<String, MemoryFileManager.OutputClass> compileSources(@NotNull File dest, @NotNull List<File> files) throws IOException {
+        javax.tools.JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        StandardJavaFileManager standardFileManager = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8);
+        try (MemoryFileManager fileManager = new MemoryFileManager(standardFileManager)) {
+            List<File> cp = new ArrayList<>();
+            classpath.forEach(s -> cp.add(new File(s)));
+            cp.add(dest); // for classes that are not recompiled
+            standardFileManager.setLocation(StandardLocation.CLASS_PATH, cp);
+            standardFileManager.setLocation(StandardLocation.SOURCE_PATH, Collections.emptyList());
+            Iterable<? extends JavaFileObject> units = standardFileManager.getJavaFileObjectsFromFiles(files);
+            boolean success = compiler.getTask(null, fileManager, diagnostics, Collections.singletonList("-g"), null, units).call();
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                String source = diagnostic.getSource() == null ? "<unknown>" : diagnostic.getSource().getName();
+                if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                    LOGGER.error("{}:{}: {}", source, diagnostic.getLineNumber(), diagnostic.getMessage(null));
+                } else if (diagnostic.getKind() == Diagnostic.Kind.WARNING || diagnostic.getKind() == Diagnostic.Kind.MANDATORY_WARNING) {
+                    LOGGER.warn("{}:{}: {}", source, diagnostic.getLineNumber(), diagnostic.getMessage(null));
+                } else {
+                    LOGGER.debug("{}:{}: {}", source, diagnostic.getLineNumber(), diagnostic.getMessage(null));
+                }
+            }
+            if (!success) {
+                throw new RuntimeException("Compilation failed, see the log for details");
+            }
+            return fileManager.getOutputs();
         }
-        return tmp;
     }
 }
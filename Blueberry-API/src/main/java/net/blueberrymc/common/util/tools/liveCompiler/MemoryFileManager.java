@@ -0,0 +1,86 @@
+package net.blueberrymc.common.util.tools.liveCompiler;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * File manager which keeps the class files produced by the compiler in memory instead of writing them to disk.
+ */
+class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+    private final Map<String, OutputClass> outputs = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    MemoryFileManager(@NotNull StandardJavaFileManager fileManager) {
+        super(fileManager);
+    }
+
+    @NotNull
+    @Override
+    public JavaFileObject getJavaFileForOutput(@NotNull Location location, @NotNull String className, @NotNull JavaFileObject.Kind kind, @Nullable FileObject sibling) throws IOException {
+        if (location != StandardLocation.CLASS_OUTPUT || kind != JavaFileObject.Kind.CLASS) {
+            return super.getJavaFileForOutput(location, className, kind, sibling);
+        }
+        OutputClass output = new OutputClass(className, sibling == null ? null : sibling.toUri());
+        outputs.put(className, output);
+        return output;
+    }
+
+    /**
+     * Returns the class files produced by the compiler, keyed by the binary name of the class.
+     * @return the outputs
+     */
+    @NotNull
+    Map<String, OutputClass> getOutputs() {
+        return outputs;
+    }
+
+    static class OutputClass extends SimpleJavaFileObject {
+        private final String className;
+        private final URI source;
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        private OutputClass(@NotNull String className, @Nullable URI source) {
+            super(URI.create("mem:///" + className.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+            this.className = className;
+            this.source = source;
+        }
+
+        @NotNull
+        String getClassName() {
+            return className;
+        }
+
+        /**
+         * Returns the URI of the source file this class was compiled from, if known.
+         */
+        @Nullable
+        URI getSource() {
+            return source;
+        }
+
+        @NotNull
+        byte@NotNull[] getBytes() {
+            return out.toByteArray();
+        }
+
+        @NotNull
+        @Override
+        public OutputStream openOutputStream() {
+            out.reset();
+            return out;
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package net.blueberrymc.config;
+
+import com.google.common.base.Preconditions;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Binds the fields annotated with {@link ConfigPath} to a {@link ModConfig}. The fields are looked up and their
+ * accessors are created once per class, so loading and saving do not use reflection. Mods read the plain fields in hot
+ * code.
+ * <p>Supported field types are primitives and their wrappers, {@link String}, enums (stored by name) and
+ * {@link List}s. Integral fields only accept whole numbers within the range of their type, and the elements of a
+ * {@code List<E>} are converted like a field of type {@code E}.
+ * <pre>
+ * public class MyConfig {
+ *     &#64;ConfigPath(value = "spawn.cap", min = 0)
+ *     public int spawnCap = 70;
+ * }
+ *
+ * MyConfig config = getConfig().bind(new MyConfig());
+ * </pre>
+ * @param <T> the type of the config object
+ */
+public final class ConfigBinder<T> {
+    private static final Map<Class<?>, ConfigBinder<?>> BINDERS = new ConcurrentHashMap<>();
+    private final Class<T> clazz;
+    private final List<Binding> bindings;
+
+    private ConfigBinder(@NotNull Class<T> clazz) {
+        this.clazz = clazz;
+        List<Binding> list = new ArrayList<>();
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                ConfigPath path = field.getAnnotation(ConfigPath.class);
+                if (path == null) continue;
+                if (Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers())) {
+                    throw new IllegalArgumentException("@ConfigPath field must not be static or final: " + c.getTypeName() + "." + field.getName());
+                }
+                try {
+                    field.setAccessible(true);
+                    list.add(new Binding(field, path, lookup.unreflectGetter(field), lookup.unreflectSetter(field)));
+                } catch (IllegalAccessException | RuntimeException ex) {
+                    throw new IllegalArgumentException("Could not access " + c.getTypeName() + "." + field.getName(), ex);
+                }
+            }
+        }
+        this.bindings = Collections.unmodifiableList(list);
+    }
+
+    @SuppressWarnings("unchecked")
+    @NotNull
+    public static <T> ConfigBinder<T> of(@NotNull Class<T> clazz) {
+        Preconditions.checkNotNull(clazz, "clazz cannot be null");
+        return (ConfigBinder<T>) BINDERS.computeIfAbsent(clazz, ConfigBinder::new);
+    }
+
+    /**
+     * Removes the binders of the classes defined by the class loader.
+     * @param classLoader the class loader of an unloaded mod
+     */
+    static void unregister(@NotNull ClassLoader classLoader) {
+        BINDERS.keySet().removeIf(c -> c.getClassLoader() == classLoader);
+    }
+
+    @Contract(pure = true)
+    @NotNull
+    public Class<T> getType() {
+        return clazz;
+    }
+
+    /**
+     * Validates the values in the config and copies them into the fields. The fields are not modified if any value is
+     * invalid.
+     * @param config the config
+     * @param object the object
+     * @throws InvalidConfigException if a value is missing, has a wrong type, or is out of range
+     */
+    public void load(@NotNull ModConfig config, @NotNull T object) throws InvalidConfigException {
+        load(config.getFilename(), config.getConfig().getRawData(), object);
+    }
+
+    void load(@NotNull String filename, @NotNull Map<String, Object> data, @NotNull T object) throws InvalidConfigException {
+        List<String> errors = new ArrayList<>();
+        Object[] values = new Object[bindings.size()];
+        for (int i = 0; i < bindings.size(); i++) {
+            Binding binding = bindings.get(i);
+            Object raw = binding.key.find(data);
+            if (raw == null) {
+                if (binding.required) errors.add(binding.key + " is required");
+                continue;
+            }
+            try {
+                values[i] = binding.convert(raw);
+            } catch (IllegalArgumentException ex) {
+                errors.add(binding.key + ": " + ex.getMessage());
+            }
+        }
+        if (!errors.isEmpty()) {
+            throw new InvalidConfigException("Invalid config " + filename + " for " + clazz.getTypeName() + ": " + String.join(", ", errors));
+        }
+        for (int i = 0; i < bindings.size(); i++) {
+            if (values[i] == null) continue;
+            try {
+                bindings.get(i).setter.invoke(object, values[i]);
+            } catch (Throwable throwable) {
+                throw new InvalidConfigException("Could not set " + bindings.get(i).key, throwable);
+            }
+        }
+    }
+
+    /**
+     * Copies the fields into the config. Call {@link ModConfig#saveConfig()} to write the config to the file.
+     * @param config the config
+     * @param object the object
+     */
+    public void save(@NotNull ModConfig config, @NotNull T object) {
+        save(object, config::set);
+    }
+
+    void save(@NotNull T object, @NotNull BiConsumer<ConfigKey, Object> setter) {
+        for (Binding binding : bindings) {
+            Object value;
+            try {
+                value = binding.getter.invoke(object);
+            } catch (Throwable throwable) {
+                throw new IllegalStateException("Could not get " + binding.key, throwable);
+            }
+            if (value instanceof List) {
+                List<Object> list = new ArrayList<>(((List<?>) value).size());
+                for (Object element : (List<?>) value) {
+                    list.add(toConfigValue(element));
+                }
+                value = list;
+            }
+            setter.accept(binding.key, toConfigValue(value));
+        }
+    }
+
+    /**
+     * Converts the values which YAML cannot load back into the same type to the form that {@link #load} accepts.
+     */
+    @Nullable
+    private static Object toConfigValue(@Nullable Object value) {
+        if (value instanceof Enum) return ((Enum<?>) value).name();
+        if (value instanceof Character) return value.toString();
+        return value;
+    }
+
+    private static class Binding {
+        private final ConfigKey key;
+        private final Class<?> type;
+        // the element type of a List field, or null if it is not a List or the element type is not a class
+        private final Class<?> elementType;
+        private final boolean required;
+        private final double min;
+        private final double max;
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        private Binding(@NotNull Field field, @NotNull ConfigPath path, @NotNull MethodHandle getter, @NotNull MethodHandle setter) {
+            this.key = ConfigKey.of(path.value());
+            this.type = wrap(field.getType());
+            this.elementType = List.class.isAssignableFrom(type) ? getElementType(field.getGenericType()) : null;
+            this.required = path.required();
+            this.min = path.min();
+            this.max = path.max();
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        @NotNull
+        private Object convert(@NotNull Object raw) throws IllegalArgumentException {
+            if (Number.class.isAssignableFrom(type) && raw instanceof Number) {
+                Number number = (Number) raw;
+                if (number.doubleValue() < min || number.doubleValue() > max) {
+                    throw new IllegalArgumentException(number + " is not in range [" + min + ", " + max + "]");
+                }
+            }
+            if (elementType != null && raw instanceof List) {
+                List<Object> list = new ArrayList<>();
+                int i = 0;
+                for (Object element : (List<?>) raw) {
+                    if (element == null) {
+                        list.add(null);
+                    } else {
+                        try {
+                            list.add(convert(element, elementType));
+                        } catch (IllegalArgumentException ex) {
+                            throw new IllegalArgumentException("[" + i + "]: " + ex.getMessage());
+                        }
+                    }
+                    i++;
+                }
+                if (type.isAssignableFrom(ArrayList.class)) return list;
+            }
+            return convert(raw, type);
+        }
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        @NotNull
+        private static Object convert(@NotNull Object raw, @NotNull Class<?> type) throws IllegalArgumentException {
+            if (Number.class.isAssignableFrom(type)) {
+                if (!(raw instanceof Number)) throw new IllegalArgumentException("expected a number, got " + raw);
+                Number number = (Number) raw;
+                if (type == Integer.class) return (int) toLong(number, Integer.MIN_VALUE, Integer.MAX_VALUE);
+                if (type == Long.class) return toLong(number, Long.MIN_VALUE, Long.MAX_VALUE);
+                if (type == Short.class) return (short) toLong(number, Short.MIN_VALUE, Short.MAX_VALUE);
+                if (type == Byte.class) return (byte) toLong(number, Byte.MIN_VALUE, Byte.MAX_VALUE);
+                if (type == Double.class) return number.doubleValue();
+                if (type == Float.class) return number.floatValue();
+                if (type.isInstance(number)) return number;
+                throw new IllegalArgumentException("unsupported number type " + type.getTypeName());
+            }
+            if (type == Boolean.class) {
+                if (!(raw instanceof Boolean)) throw new IllegalArgumentException("expected a boolean, got " + raw);
+                return raw;
+            }
+            if (type == Character.class) {
+                if (!(raw instanceof String) || ((String) raw).length() != 1) throw new IllegalArgumentException("expected a character, got " + raw);
+                return ((String) raw).charAt(0);
+            }
+            if (type == String.class) return raw.toString();
+            if (type.isEnum()) {
+                try {
+                    return Enum.valueOf((Class<? extends Enum>) type, raw.toString());
+                } catch (IllegalArgumentException ex) {
+                    throw new IllegalArgumentException("unknown constant " + raw + " of " + type.getSimpleName());
+                }
+            }
+            if (type.isInstance(raw)) return raw;
+            throw new IllegalArgumentException("expected " + type.getSimpleName() + ", got " + raw.getClass().getSimpleName());
+        }
+
+        /**
+         * Converts the number to a long without losing any information.
+         * @throws IllegalArgumentException if the number is not an integer or not in range
+         */
+        private static long toLong(@NotNull Number number, long min, long max) throws IllegalArgumentException {
+            long value;
+            if (number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte) {
+                value = number.longValue();
+            } else if (number instanceof BigInteger) {
+                if (((BigInteger) number).bitLength() >= 64) throw new IllegalArgumentException(number + " is out of range [" + min + ", " + max + "]");
+                value = number.longValue();
+            } else {
+                double d = number.doubleValue();
+                // 2^63 is the first double above Long.MAX_VALUE
+                if (d != Math.rint(d) || Double.isInfinite(d) || d < -0x1p63 || d >= 0x1p63) {
+                    throw new IllegalArgumentException("expected an integer, got " + number);
+                }
+                value = (long) d;
+            }
+            if (value < min || value > max) throw new IllegalArgumentException(number + " is out of range [" + min + ", " + max + "]");
+            return value;
+        }
+
+        @Nullable
+        private static Class<?> getElementType(@NotNull Type type) {
+            if (!(type instanceof ParameterizedType)) return null;
+            Type element = ((ParameterizedType) type).getActualTypeArguments()[0];
+            if (element instanceof ParameterizedType) element = ((ParameterizedType) element).getRawType();
+            if (!(element instanceof Class) || element == Object.class) return null;
+            return wrap((Class<?>) element);
+        }
+
+        @NotNull
+        private static Class<?> wrap(@NotNull Class<?> type) {
+            if (type == int.class) return Integer.class;
+            if (type == long.class) return Long.class;
+            if (type == double.class) return Double.class;
+            if (type == float.class) return Float.class;
+            if (type == short.class) return Short.class;
+            if (type == byte.class) return Byte.class;
+            if (type == boolean.class) return Boolean.class;
+            if (type == char.class) return Character.class;
+            return type;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package net.blueberrymc.config;
+
+import com.google.common.base.Preconditions;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A config path (like {@code debugRenderer.chunkBorder}) split into its keys once. Keys are cached, so compiling the
+ * same path again is a map lookup.
+ */
+public final class ConfigKey {
+    private static final int MAX_CACHE_SIZE = 8192;
+    private static final Map<String, ConfigKey> CACHE = new ConcurrentHashMap<>();
+    private final String path;
+    private final String[] keys;
+
+    private ConfigKey(@NotNull String path) {
+        this.path = path;
+        List<String> list = new ArrayList<>();
+        int start = 0;
+        int index;
+        while ((index = path.indexOf('.', start)) != -1) {
+            list.add(path.substring(start, index).intern());
+            start = index + 1;
+        }
+        list.add(path.substring(start).intern());
+        this.keys = list.toArray(new String[0]);
+    }
+
+    /**
+     * Returns the compiled path.
+     * @param path the path, separated by '.'
+     * @return the key
+     */
+    @NotNull
+    public static ConfigKey of(@NotNull String path) {
+        Preconditions.checkNotNull(path, "path cannot be null");
+        ConfigKey key = CACHE.get(path);
+        if (key != null) return key;
+        key = new ConfigKey(path);
+        // do not grow forever if someone builds paths dynamically
+        if (CACHE.size() < MAX_CACHE_SIZE) CACHE.put(path, key);
+        return key;
+    }
+
+    @Contract(pure = true)
+    @NotNull
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the number of keys in the path.
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    @Contract(pure = true)
+    @NotNull
+    public String get(int index) {
+        return keys[index];
+    }
+
+    /**
+     * Returns the value at this path, or null if the path does not exist.
+     * @param root the root map
+     * @return the value
+     */
+    @Contract(pure = true)
+    @Nullable
+    public Object find(@NotNull Map<String, Object> root) {
+        Map<?, ?> map = root;
+        for (int i = 0; i < keys.length - 1; i++) {
+            Object o = map.get(keys[i]);
+            if (!(o instanceof Map)) return null;
+            map = (Map<?, ?>) o;
+        }
+        return map.get(keys[keys.length - 1]);
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ConfigKey)) return false;
+        return path.equals(((ConfigKey) o).path);
+    }
+
+    @Override
+    public int hashCode() {
+        return path.hashCode();
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        return path;
+    }
+}
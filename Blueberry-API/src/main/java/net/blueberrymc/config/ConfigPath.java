@@ -0,0 +1,36 @@
+package net.blueberrymc.config;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Binds a field to a config path. See {@link ConfigBinder} for the supported field types.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface ConfigPath {
+    /**
+     * The path, separated by '.'.
+     */
+    @NotNull
+    String value();
+
+    /**
+     * Whether loading fails if the path does not exist. If false, the field keeps its initial value.
+     */
+    boolean required() default false;
+
+    /**
+     * The minimum value of a number field.
+     */
+    double min() default Double.NEGATIVE_INFINITY;
+
+    /**
+     * The maximum value of a number field.
+     */
+    double max() default Double.POSITIVE_INFINITY;
+}
@@ -0,0 +1,124 @@
+package net.blueberrymc.config;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.blueberrymc.config.yaml.YamlConfiguration;
+import net.blueberrymc.config.yaml.YamlObject;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes configs on a background thread. Saves of the same file within {@link #DEBOUNCE_MILLIS} are coalesced into
+ * one write of the latest values. Pending saves are written by {@link #flush()} when Blueberry shuts down, after the
+ * mods are disabled.
+ */
+class ConfigSaveService {
+    static final ConfigSaveService INSTANCE = new ConfigSaveService();
+    static final long DEBOUNCE_MILLIS = 500;
+    private static final Logger LOGGER = LogManager.getLogger();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("Blueberry Config Saver").setDaemon(true).build());
+    private final Map<File, PendingSave> pending = new HashMap<>();
+
+    /**
+     * Schedules a save of the config. The values are copied immediately, so they can be modified after this call.
+     * @param file the file
+     * @param config the config
+     * @return the future which is completed when the values have been written
+     */
+    @NotNull
+    CompletableFuture<Void> save(@NotNull File file, @NotNull YamlObject config) {
+        Map<String, Object> snapshot = copyMap(config.getRawData());
+        synchronized (pending) {
+            PendingSave save = pending.get(file);
+            if (save == null) {
+                save = new PendingSave();
+                pending.put(file, save);
+            } else {
+                save.future.cancel(false);
+            }
+            save.snapshot = snapshot;
+            save.future = executor.schedule(() -> write(file), DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+            return save.done;
+        }
+    }
+
+    /**
+     * Discards the pending save of the file, if any. Used when the file is written synchronously.
+     * @param file the file
+     */
+    void cancel(@NotNull File file) {
+        synchronized (pending) {
+            PendingSave save = pending.remove(file);
+            if (save != null) {
+                save.future.cancel(false);
+                // the file is written with the latest values by the caller
+                save.done.complete(null);
+            }
+        }
+    }
+
+    /**
+     * Writes all pending saves on the current thread.
+     */
+    void flush() {
+        List<File> files;
+        synchronized (pending) {
+            files = new ArrayList<>(pending.keySet());
+        }
+        files.forEach(this::write);
+    }
+
+    private void write(@NotNull File file) {
+        PendingSave save;
+        synchronized (pending) {
+            save = pending.remove(file);
+            if (save == null) return;
+            save.future.cancel(false);
+        }
+        try {
+            YamlConfiguration.saveTo(file, new YamlObject(save.snapshot));
+            save.done.complete(null);
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.error("Could not save config {}", file.getAbsolutePath(), ex);
+            save.done.completeExceptionally(ex);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @NotNull
+    private static Map<String, Object> copyMap(@NotNull Map<String, Object> map) {
+        Map<String, Object> copy = new LinkedHashMap<>();
+        map.forEach((key, value) -> copy.put(key, copy(value)));
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object copy(Object value) {
+        if (value instanceof Map) return copyMap((Map<String, Object>) value);
+        if (value instanceof List) {
+            List<Object> list = new ArrayList<>();
+            for (Object o : (List<Object>) value) list.add(copy(o));
+            return list;
+        }
+        return value;
+    }
+
+    private static class PendingSave {
+        private Map<String, Object> snapshot;
+        private ScheduledFuture<?> future;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+    }
+}
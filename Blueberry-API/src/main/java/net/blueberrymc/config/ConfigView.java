@@ -0,0 +1,139 @@
+package net.blueberrymc.config;
+
+import com.google.common.collect.ImmutableList;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A cached, typed value of a {@link ModConfig}. The value is read from the config again only after
+ * {@link ModConfig#set(String, Object)} or {@link ModConfig#reloadConfig()} has been called; until then, reading it is
+ * a field read.
+ * <p>Changes made directly to {@link ModConfig#getConfig()} are not detected. Views are not thread-safe.
+ */
+public abstract class ConfigView {
+    protected final ModConfig config;
+    protected final ConfigKey key;
+    private int generation = -1;
+
+    protected ConfigView(@NotNull ModConfig config, @NotNull ConfigKey key) {
+        this.config = config;
+        this.key = key;
+    }
+
+    @NotNull
+    public ModConfig getModConfig() {
+        return config;
+    }
+
+    @NotNull
+    public ConfigKey getKey() {
+        return key;
+    }
+
+    /**
+     * Checks if the value has to be read again, and marks it as read.
+     * @return true if the value has to be read again
+     */
+    protected final boolean refresh() {
+        int current = config.getGeneration();
+        if (current == generation) return false;
+        generation = current;
+        return true;
+    }
+
+    public static class IntView extends ConfigView {
+        private final int def;
+        private int value;
+
+        public IntView(@NotNull ModConfig config, @NotNull ConfigKey key, int def) {
+            super(config, key);
+            this.def = def;
+        }
+
+        public int get() {
+            if (refresh()) {
+                Object o = config.getRaw(key);
+                value = o instanceof Number ? ((Number) o).intValue() : def;
+            }
+            return value;
+        }
+    }
+
+    public static class BooleanView extends ConfigView {
+        private final boolean def;
+        private boolean value;
+
+        public BooleanView(@NotNull ModConfig config, @NotNull ConfigKey key, boolean def) {
+            super(config, key);
+            this.def = def;
+        }
+
+        public boolean get() {
+            if (refresh()) {
+                Object o = config.getRaw(key);
+                value = o instanceof Boolean ? (Boolean) o : def;
+            }
+            return value;
+        }
+    }
+
+    public static class DoubleView extends ConfigView {
+        private final double def;
+        private double value;
+
+        public DoubleView(@NotNull ModConfig config, @NotNull ConfigKey key, double def) {
+            super(config, key);
+            this.def = def;
+        }
+
+        public double get() {
+            if (refresh()) {
+                Object o = config.getRaw(key);
+                value = o instanceof Number ? ((Number) o).doubleValue() : def;
+            }
+            return value;
+        }
+    }
+
+    public static class ListView<T> extends ConfigView {
+        private final Class<T> elementType;
+        private final List<T> def;
+        private List<T> value;
+
+        public ListView(@NotNull ModConfig config, @NotNull ConfigKey key, @NotNull Class<T> elementType, @NotNull List<T> def) {
+            super(config, key);
+            this.elementType = elementType;
+            this.def = ImmutableList.copyOf(def);
+        }
+
+        /**
+         * Returns the list, without the elements which are not instances of the element type.
+         * @return the unmodifiable list
+         */
+        @NotNull
+        public List<T> get() {
+            if (refresh()) {
+                Object o = config.getRaw(key);
+                if (o instanceof List) {
+                    List<T> list = new ArrayList<>();
+                    for (Object element : (List<?>) o) {
+                        if (elementType.isInstance(element)) list.add(elementType.cast(element));
+                    }
+                    value = ImmutableList.copyOf(list);
+                } else {
+                    value = def;
+                }
+            }
+            return value;
+        }
+
+        @Nullable
+        public T get(int index) {
+            List<T> list = get();
+            return index >= 0 && index < list.size() ? list.get(index) : null;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package net.blueberrymc.config;
+
+import net.blueberrymc.common.Blueberry;
+import net.blueberrymc.common.bml.BlueberryMod;
+import net.blueberrymc.common.event.config.ModConfigChangedEvent;
+import net.blueberrymc.common.scheduler.AbstractBlueberryScheduler;
+import net.blueberrymc.config.yaml.YamlConfiguration;
+import net.blueberrymc.config.yaml.YamlObject;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the files of {@link ModConfig}s with a single {@link WatchService} thread. Changed files are parsed on that
+ * thread, then compared with the loaded values and applied on the main thread, followed by a
+ * {@link ModConfigChangedEvent} listing the changed paths.
+ */
+class ConfigWatcher implements Runnable {
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final long DEBOUNCE_MILLIS = 200;
+    private static ConfigWatcher instance;
+    private final WatchService watchService;
+    private final Set<Path> directories = ConcurrentHashMap.newKeySet();
+    private final Map<Path, ModConfig> configs = new ConcurrentHashMap<>();
+
+    private ConfigWatcher() throws IOException {
+        this.watchService = FileSystems.getDefault().newWatchService();
+        Thread thread = new Thread(this, "Blueberry Config Watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @NotNull
+    static synchronized ConfigWatcher getInstance() throws IOException {
+        if (instance == null) instance = new ConfigWatcher();
+        return instance;
+    }
+
+    /**
+     * Stops watching the configs of the mod, if the watcher has been started.
+     * @param modId the mod id
+     */
+    static synchronized void unwatchAll(@NotNull String modId) {
+        if (instance == null) return;
+        instance.configs.values().removeIf(config -> config.getModId().equals(modId));
+    }
+
+    void watch(@NotNull ModConfig config) throws IOException {
+        Path file = config.getConfigFile().getAbsoluteFile().toPath();
+        Path dir = file.getParent();
+        if (directories.add(dir)) {
+            dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+        configs.put(file, config);
+    }
+
+    void unwatch(@NotNull ModConfig config) {
+        configs.remove(config.getConfigFile().getAbsoluteFile().toPath(), config);
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                Set<Path> changed = new HashSet<>();
+                WatchKey key = watchService.take();
+                // editors often write several times per save
+                while (key != null) {
+                    Path dir = (Path) key.watchable();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            changed.addAll(configs.keySet());
+                            continue;
+                        }
+                        Path path = dir.resolve((Path) event.context());
+                        if (configs.containsKey(path)) changed.add(path);
+                    }
+                    key.reset();
+                    key = watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                changed.forEach(this::reload);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException ignore) {}
+    }
+
+    private void reload(@NotNull Path path) {
+        ModConfig config = configs.get(path);
+        if (config == null) return;
+        int generation = config.getGeneration();
+        YamlObject object;
+        try {
+            File file = path.toFile();
+            if (file.length() == 0) return; // probably truncated by an editor, wait for the next write
+            object = new YamlConfiguration(file).asObject();
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.warn("Could not reload config {}, keeping the old values", path, ex);
+            return;
+        }
+        AbstractBlueberryScheduler scheduler = Blueberry.isClient() ? Blueberry.getUtil().getClientScheduler() : Blueberry.getUtil().getServerScheduler();
+        BlueberryMod owner = Objects.requireNonNull(Blueberry.getModLoader().getModById("blueberry"));
+        // the loaded values are only modified on the main thread, so they are compared there
+        scheduler.runTask(owner, () -> {
+            if (configs.get(path) != config) return; // unwatched in the meantime
+            if (config.getGeneration() != generation) {
+                LOGGER.warn("Config {} was modified in memory while reloading, ignoring the changes in the file", config.getFilename());
+                return;
+            }
+            Set<String> changedPaths = new LinkedHashSet<>();
+            diff("", config.getConfig().getRawData(), object.getRawData(), changedPaths);
+            if (changedPaths.isEmpty()) return; // e.g. written by ModConfig#saveConfig
+            config.setConfig(object);
+            LOGGER.info("Reloaded config {} ({} changes)", config.getFilename(), changedPaths.size());
+            new ModConfigChangedEvent(config, changedPaths).callEvent();
+        });
+    }
+
+    private static void diff(@NotNull String prefix, @NotNull Map<?, ?> oldMap, @NotNull Map<?, ?> newMap, @NotNull Set<String> changedPaths) {
+        Set<Object> keys = new LinkedHashSet<>(oldMap.keySet());
+        keys.addAll(newMap.keySet());
+        for (Object key : keys) {
+            String path = prefix + key;
+            Object oldValue = oldMap.get(key);
+            Object newValue = newMap.get(key);
+            if (oldValue instanceof Map && newValue instanceof Map) {
+                diff(path + ".", (Map<?, ?>) oldValue, (Map<?, ?>) newValue, changedPaths);
+            } else if (!equals(oldValue, newValue) || oldMap.containsKey(key) != newMap.containsKey(key)) {
+                changedPaths.add(path);
+            }
+        }
+    }
+
+    private static boolean equals(@Nullable Object a, @Nullable Object b) {
+        // YAML does not distinguish between integer types, but ModConfig#set may store any of them
+        if (a instanceof Number && b instanceof Number && !(a instanceof Double || a instanceof Float) && !(b instanceof Double || b instanceof Float)) {
+            return ((Number) a).longValue() == ((Number) b).longValue();
+        }
+        return Objects.equals(a, b);
+    }
+}
@@ -11,6 +11,10 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class ModConfig {
     private static final Logger LOGGER = LogManager.getLogger();
@@ -18,6 +22,8 @@ public class ModConfig {
     @NotNull private final ModDescriptionFile modDescriptionFile;
     @NotNull private YamlObject config;
     @NotNull private final File configFile;
+    // incremented whenever a value may have changed, see ConfigView
+    private volatile int generation = 0;
 
     private ModConfig(@NotNull String filename, @NotNull ModDescriptionFile modDescriptionFile) {
         this.filename = filename;
@@ -71,50 +77,173 @@ public class ModConfig {
 
     public void reloadConfig() throws IOException {
         this.config = new YamlConfiguration(this.configFile).asObject();
+        this.generation++;
     }
 
+    /**
+     * Replaces the values with the ones reloaded by {@link ConfigWatcher}.
+     */
+    void setConfig(@NotNull YamlObject config) {
+        this.config = config;
+        this.generation++;
+    }
+
+    /**
+     * Enables or disables reloading this config when its file is changed. Changes are applied on the main thread,
+     * and {@link net.blueberrymc.common.event.config.ModConfigChangedEvent} is called with the changed paths.
+     * @param watching whether to watch the file
+     */
+    public void setWatching(boolean watching) {
+        try {
+            if (watching) {
+                ConfigWatcher.getInstance().watch(this);
+            } else {
+                ConfigWatcher.getInstance().unwatch(this);
+            }
+        } catch (IOException ex) {
+            LOGGER.warn("Could not watch config file {}", configFile.getAbsolutePath(), ex);
+        }
+    }
+
+    /**
+     * Stops watching the configs of a mod. Called when the mod is disabled.
+     * @param modId the mod id
+     */
+    public static void unwatchAll(@NotNull String modId) {
+        ConfigWatcher.unwatchAll(modId);
+    }
+
+    /**
+     * Forgets the {@link ConfigBinder}s of the classes of an unloaded mod, so that they can be garbage collected.
+     * @param classLoader the class loader of the mod
+     */
+    public static void unbindAll(@NotNull ClassLoader classLoader) {
+        ConfigBinder.unregister(classLoader);
+    }
+
+    /**
+     * Returns the number of times this config has been modified through {@link #set(String, Object)} or reloaded.
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Writes the config to the file on the current thread.
+     * @throws IOException if an I/O error occurs
+     */
     public void saveConfig() throws IOException {
+        ConfigSaveService.INSTANCE.cancel(this.configFile);
         config.save(this.configFile);
     }
 
+    /**
+     * Writes the config to the file on a background thread. Repeated calls within a short time are coalesced into a
+     * single write of the latest values. Errors are logged.
+     * @return the future which is completed when the values have been written
+     */
+    @NotNull
+    public CompletableFuture<Void> saveConfigAsync() {
+        return ConfigSaveService.INSTANCE.save(this.configFile, config);
+    }
+
+    /**
+     * Writes the pending {@link #saveConfigAsync()} saves of all configs on the current thread. Called when Blueberry
+     * shuts down, after the mods are disabled.
+     */
+    public static void flushPendingSaves() {
+        ConfigSaveService.INSTANCE.flush();
+    }
+
     public void set(@NotNull("path") String path, @Nullable Object value) {
-        YamlObject parent = null;
-        YamlObject object = getConfig();
-        String[] arr = path.split("\\.");
-        for (int i = 0; i < arr.length; i++) {
-            boolean last = i + 1 == arr.length;
-            if (last) {
-                object.set(arr[i], value);
-                if (parent != null) parent.setObject(arr[i - 1], object);
-            } else {
-                parent = object;
-                object = getOrCreateObject(object, arr[i]);
+        set(ConfigKey.of(path), value);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void set(@NotNull ConfigKey key, @Nullable Object value) {
+        Map<String, Object> map = getConfig().getRawData();
+        for (int i = 0; i < key.size() - 1; i++) {
+            Object o = map.get(key.get(i));
+            if (!(o instanceof Map)) {
+                o = new HashMap<String, Object>();
+                map.put(key.get(i), o);
             }
+            map = (Map<String, Object>) o;
         }
+        new YamlObject(getConfig().getYaml(), map).set(key.get(key.size() - 1), value);
+        generation++;
+    }
+
+    /**
+     * Returns the raw value at the path, or null if the path does not exist.
+     * @param key the path
+     * @return the value
+     */
+    @Nullable
+    public Object getRaw(@NotNull ConfigKey key) {
+        return key.find(getConfig().getRawData());
     }
 
     @Contract
-    @SuppressWarnings("unchecked")
     public <T> T get(@NotNull("path") String path, @Nullable T def) {
-        YamlObject object = getConfig();
-        String[] arr = path.split("\\.");
-        for (int i = 0; i < arr.length; i++) {
-            boolean last = i + 1 == arr.length;
-            if (last) {
-                T result;
-                try {
-                    result = (T) object.getRawData().get(arr[i]);
-                } catch (ClassCastException ex) {
-                    return def;
-                }
-                if (result == null) return def;
-                return result;
-            } else {
-                object = object.getObject(arr[i]);
-                if (object == null) return def;
-            }
+        return get(ConfigKey.of(path), def);
+    }
+
+    @Contract
+    @SuppressWarnings("unchecked")
+    public <T> T get(@NotNull ConfigKey key, @Nullable T def) {
+        Object result = getRaw(key);
+        if (result == null) return def;
+        try {
+            return (T) result;
+        } catch (ClassCastException ex) {
+            return def;
         }
-        return def;
+    }
+
+    /**
+     * Copies the values of this config into the fields of the object annotated with {@link ConfigPath}.
+     * @param object the object
+     * @param <T> the type of the object
+     * @return the object
+     * @throws InvalidConfigException if a value is invalid
+     */
+    @SuppressWarnings("unchecked")
+    @NotNull
+    public <T> T bind(@NotNull T object) throws InvalidConfigException {
+        ConfigBinder.of((Class<T>) object.getClass()).load(this, object);
+        return object;
+    }
+
+    /**
+     * Copies the fields of the object annotated with {@link ConfigPath} into this config. Call {@link #saveConfig()}
+     * to write the config to the file.
+     * @param object the object
+     * @param <T> the type of the object
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void write(@NotNull T object) {
+        ConfigBinder.of((Class<T>) object.getClass()).save(this, object);
+    }
+
+    @NotNull
+    public ConfigView.IntView intView(@NotNull("path") String path, int def) {
+        return new ConfigView.IntView(this, ConfigKey.of(path), def);
+    }
+
+    @NotNull
+    public ConfigView.BooleanView booleanView(@NotNull("path") String path, boolean def) {
+        return new ConfigView.BooleanView(this, ConfigKey.of(path), def);
+    }
+
+    @NotNull
+    public ConfigView.DoubleView doubleView(@NotNull("path") String path, double def) {
+        return new ConfigView.DoubleView(this, ConfigKey.of(path), def);
+    }
+
+    @NotNull
+    public <T> ConfigView.ListView<T> listView(@NotNull("path") String path, @NotNull Class<T> elementType, @NotNull List<T> def) {
+        return new ConfigView.ListView<>(this, ConfigKey.of(path), elementType, def);
     }
 
     public boolean getBoolean(@NotNull("path") String path) {
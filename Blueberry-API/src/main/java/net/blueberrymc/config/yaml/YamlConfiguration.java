@@ -9,10 +9,15 @@ import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -29,7 +34,13 @@ public class YamlConfiguration {
         Preconditions.checkNotNull(file, "file cannot be null");
         if (!file.exists() || !file.isFile()) throw new FileNotFoundException(file.getName() + " does not exist or is not a file");
         this.yaml = DEFAULT;
-        this.data = this.yaml.load(new FileInputStream(file));
+        try (InputStream in = new FileInputStream(file)) {
+            this.data = this.yaml.load(in);
+        } catch (FileNotFoundException ex) {
+            throw ex;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
     }
 
     public YamlConfiguration(@NotNull Yaml yaml, @NotNull InputStream inputStream) {
@@ -99,9 +110,22 @@ public class YamlConfiguration {
         Preconditions.checkNotNull(yaml, "yaml cannot be null");
         Preconditions.checkNotNull(file, "file cannot be null");
         Preconditions.checkNotNull(member, "member cannot be null");
-        BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(file));
-        out.write(dump(member).getBytes(StandardCharsets.UTF_8));
-        out.close();
+        byte[] bytes = dump(member).getBytes(StandardCharsets.UTF_8);
+        // write to a temporary file first, so that a crash while writing does not leave a truncated file
+        Path target = file.getAbsoluteFile().toPath();
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                out.write(bytes);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
     }
 
     public static void saveTo(@NotNull File file, @NotNull YamlMember member) throws IOException {
@@ -0,0 +1,23 @@
+package net.blueberrymc.network;
+
+/**
+ * What happens to a packet which is sent while the connection has more pending bytes than the high watermark.
+ * @see BlueberryNetworkManager#setOutboundWatermarks(int, int)
+ */
+public enum BackpressurePolicy {
+    /**
+     * The packet is sent anyway, like vanilla packets.
+     */
+    NONE,
+    /**
+     * The packet is queued until the pending bytes drop below the low watermark. When the queue is full, the oldest
+     * queued packet is dropped.
+     */
+    DROP_OLDEST,
+    /**
+     * Like {@link #DROP_OLDEST}, but the packet replaces a queued packet with the same id, if any. Useful for packets
+     * which carry the latest state of something.
+     */
+    COALESCE,
+    ;
+}
@@ -1,34 +1,94 @@
 package net.blueberrymc.network;
 
+import com.google.common.collect.MapMaker;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import net.blueberrymc.client.BlueberryClient;
+import net.blueberrymc.common.Blueberry;
+import net.blueberrymc.common.BlueberryUtil;
+import net.blueberrymc.common.Side;
 import net.blueberrymc.common.bml.BlueberryMod;
 import net.blueberrymc.common.util.reflect.Ref;
 import net.blueberrymc.common.util.reflect.RefField;
+import net.blueberrymc.server.BlueberryServer;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.player.LocalPlayer;
 import net.minecraft.network.Connection;
 import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.network.protocol.Packet;
 import net.minecraft.network.protocol.game.ClientboundCustomPayloadPacket;
 import net.minecraft.network.protocol.game.ServerboundCustomPayloadPacket;
 import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.ChunkPos;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 public class BlueberryNetworkManager {
     private static final Logger LOGGER = LogManager.getLogger();
     private static final RefField<ServerboundCustomPayloadPacket> SERVERBOUND_CUSTOM_PAYLOAD_PACKET_REF_IDENTIFIER_FIELD = Ref.getClass(ServerboundCustomPayloadPacket.class).getDeclaredField("identifier").accessible(true);
     private static final RefField<ServerboundCustomPayloadPacket> SERVERBOUND_CUSTOM_PAYLOAD_PACKET_REF_DATA_FIELD = Ref.getClass(ServerboundCustomPayloadPacket.class).getDeclaredField("data").accessible(true);
+    private static final RefField<ClientboundCustomPayloadPacket> CLIENTBOUND_CUSTOM_PAYLOAD_PACKET_REF_DATA_FIELD = Ref.getClass(ClientboundCustomPayloadPacket.class).getDeclaredField("data").accessible(true);
     private static final Map<ResourceLocation, Supplier<BlueberryPacket<?>>> clientBoundPacketMap = new HashMap<>();
     private static final Map<ResourceLocation, Supplier<BlueberryPacket<?>>> serverBoundPacketMap = new HashMap<>();
+    private static final Map<Connection, ConnectionState> connections = new MapMaker().weakKeys().makeMap();
+    private static final int MAX_CLIENT_BOUND_PAYLOAD_SIZE = 1048576;
+    private static final int MAX_SERVER_BOUND_PAYLOAD_SIZE = 32767;
+    // the uncompressed size is checked before inflating, so that a small payload cannot make the receiver allocate much
+    private static final int MAX_CLIENT_BOUND_UNCOMPRESSED_SIZE = 8388608;
+    private static final int MAX_SERVER_BOUND_UNCOMPRESSED_SIZE = 262144;
+    private static final long MAIN_THREAD_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final ExecutorService ASYNC_EXECUTOR = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors() / 2), new ThreadFactoryBuilder().setNameFormat("Blueberry Packet Handler #%d").setDaemon(true).build());
+    private static final AtomicLong mainThreadBudgetExceeded = new AtomicLong();
+    private static final Map<ResourceLocation, RateLimit> rateLimits = new ConcurrentHashMap<>();
+    private static final Map<ResourceLocation, ChannelStats> clientBoundStats = new ConcurrentHashMap<>();
+    private static final Map<ResourceLocation, ChannelStats> serverBoundStats = new ConcurrentHashMap<>();
+    private static volatile RateLimit defaultRateLimit;
+    static volatile long lowWatermark = 1048576;
+    static volatile long highWatermark = 4194304;
+    static volatile int maxQueuedPackets = 1024;
+    static volatile boolean perConnectionStats;
+    /**
+     * The id of a payload which contains several packets. Each packet is written as its varint index in the channel
+     * table plus one (or 0 followed by its id), the varint length of its data, and the data.
+     */
+    static final ResourceLocation BUNDLE = new ResourceLocation("blueberry", "bundle");
+    /**
+     * The id of a payload which contains one packet, written as its varint index in the channel table and its data.
+     */
+    static final ResourceLocation PACKET = new ResourceLocation("blueberry", "p");
+    /**
+     * The id of the payload which the server sends before the first packet in either direction. It contains the channel
+     * tables of the client bound and server bound packets.
+     */
+    static final ResourceLocation CHANNELS = new ResourceLocation("blueberry", "channels");
+    private static volatile ChannelTables channelTables;
 
     public static void register(@NotNull BlueberryMod mod, @NotNull String id, @NotNull Supplier<BlueberryPacket<?>> packetConstructor, @NotNull BlueberryPacketFlow flow) {
         register(mod.getModId(), id, packetConstructor, flow);
@@ -46,6 +106,7 @@ public class BlueberryNetworkManager {
         } else {
             throw new IllegalArgumentException();
         }
+        channelTables = null;
     }
 
     @Nullable
@@ -76,20 +137,22 @@ public class BlueberryNetworkManager {
      */
     @Nullable
     public static BlueberryPacket<?> handle(@NotNull ClientboundCustomPayloadPacket packet) {
+        return read(packet, null);
+    }
+
+    @Nullable
+    private static BlueberryPacket<?> read(@NotNull ClientboundCustomPayloadPacket packet, @Nullable ConnectionState state) {
         Supplier<BlueberryPacket<?>> blueberryPacketConstructor = getPacket(packet.getIdentifier(), BlueberryPacketFlow.TO_CLIENT);
         if (blueberryPacketConstructor == null) {
             return null;
         }
-        if (packet.getData() == null) return null;
-        BlueberryPacket<?> blueberryPacket = null;
+        FriendlyByteBuf buf = getData(packet);
+        if (buf == null) return null;
         try {
-            blueberryPacket = blueberryPacketConstructor.get();
-            blueberryPacket.read(packet.getData());
-        } catch (IOException ex) {
-            LOGGER.warn("Failed to handle incoming client bound packet for " + packet.getIdentifier(), ex);
+            return read(packet.getIdentifier(), blueberryPacketConstructor, buf, BlueberryPacketFlow.TO_CLIENT, state);
+        } finally {
+            buf.release();
         }
-        packet.getData().release();
-        return blueberryPacket;
     }
 
     /**
@@ -99,6 +162,11 @@ public class BlueberryNetworkManager {
      */
     @Nullable
     public static BlueberryPacket<?> handle(@NotNull ServerboundCustomPayloadPacket packet) {
+        return read(packet, null);
+    }
+
+    @Nullable
+    private static BlueberryPacket<?> read(@NotNull ServerboundCustomPayloadPacket packet, @Nullable ConnectionState state) {
         ResourceLocation id = (ResourceLocation) SERVERBOUND_CUSTOM_PAYLOAD_PACKET_REF_IDENTIFIER_FIELD.get(packet);
         Supplier<BlueberryPacket<?>> blueberryPacketConstructor = getPacket(id, BlueberryPacketFlow.TO_SERVER);
         if (blueberryPacketConstructor == null) {
@@ -106,50 +174,745 @@ public class BlueberryNetworkManager {
         }
         FriendlyByteBuf buf = (FriendlyByteBuf) SERVERBOUND_CUSTOM_PAYLOAD_PACKET_REF_DATA_FIELD.get(packet);
         if (buf == null) return null;
-        BlueberryPacket<?> blueberryPacket = null;
         try {
-            blueberryPacket = blueberryPacketConstructor.get();
-            blueberryPacket.read(buf);
+            return read(id, blueberryPacketConstructor, buf, BlueberryPacketFlow.TO_SERVER, state);
+        } finally {
+            buf.release();
+        }
+    }
+
+    /**
+     * Handles the ClientboundCustomPayloadPacket, or each packet in a bundle, with the listener.
+     * @param packet the packet
+     * @param listener the listener
+     * @return true if handled, false otherwise
+     */
+    public static boolean handle(@NotNull ClientboundCustomPayloadPacket packet, @NotNull BlueberryPacketListener listener) {
+        ResourceLocation id = packet.getIdentifier();
+        if (isInternal(id)) {
+            FriendlyByteBuf buf = getData(packet);
+            if (buf == null) return false;
+            handleInternal(id, buf, getState(listener.getConnection(), BlueberryPacketFlow.TO_SERVER), listener);
+            return true;
+        }
+        ConnectionState state = getState(listener.getConnection(), BlueberryPacketFlow.TO_SERVER);
+        if (getPacket(id, BlueberryPacketFlow.TO_CLIENT) != null && !tryAcquire(state, id, BlueberryPacketFlow.TO_CLIENT)) {
+            FriendlyByteBuf buf = getData(packet);
+            if (buf != null) buf.release();
+            return true;
+        }
+        BlueberryPacket<?> blueberryPacket = read(packet, state);
+        if (blueberryPacket == null) return false;
+        dispatch(blueberryPacket, listener, state);
+        return true;
+    }
+
+    /**
+     * Handles the ServerboundCustomPayloadPacket, or each packet in a bundle, with the listener.
+     * @param packet the packet
+     * @param listener the listener
+     * @return true if handled, false otherwise
+     */
+    public static boolean handle(@NotNull ServerboundCustomPayloadPacket packet, @NotNull BlueberryPacketListener listener) {
+        ResourceLocation id = (ResourceLocation) SERVERBOUND_CUSTOM_PAYLOAD_PACKET_REF_IDENTIFIER_FIELD.get(packet);
+        Connection connection = listener.getConnection();
+        if (isInternal(id)) {
+            FriendlyByteBuf buf = (FriendlyByteBuf) SERVERBOUND_CUSTOM_PAYLOAD_PACKET_REF_DATA_FIELD.get(packet);
+            if (buf == null) return false;
+            ConnectionState state = getState(connection, BlueberryPacketFlow.TO_CLIENT);
+            sendChannelTable(connection, state);
+            handleInternal(id, buf, state, listener);
+            return true;
+        }
+        ConnectionState state = getState(connection, BlueberryPacketFlow.TO_CLIENT);
+        if (getPacket(id, BlueberryPacketFlow.TO_SERVER) != null && !tryAcquire(state, id, BlueberryPacketFlow.TO_SERVER)) {
+            FriendlyByteBuf buf = (FriendlyByteBuf) SERVERBOUND_CUSTOM_PAYLOAD_PACKET_REF_DATA_FIELD.get(packet);
+            if (buf != null) buf.release();
+            return true;
+        }
+        BlueberryPacket<?> blueberryPacket = read(packet, state);
+        if (blueberryPacket == null) return false;
+        // the client uses the indexes from now on
+        sendChannelTable(connection, state);
+        dispatch(blueberryPacket, listener, state);
+        return true;
+    }
+
+    /**
+     * Checks the rate limit of the channel before the packet is read.
+     * @param state the state of the connection which received the packet
+     * @param id the id of the packet
+     * @param flow the direction of the packet
+     * @return false if the packet has to be dropped
+     */
+    private static boolean tryAcquire(@NotNull ConnectionState state, @NotNull ResourceLocation id, @NotNull BlueberryPacketFlow flow) {
+        RateLimit limit = rateLimits.get(id);
+        if (limit == null) limit = defaultRateLimit;
+        if (limit == null || state.tryAcquire(id, limit)) return true;
+        getStats(id, flow).rateLimited.increment();
+        return false;
+    }
+
+    private static boolean isInternal(@Nullable ResourceLocation id) {
+        return BUNDLE.equals(id) || PACKET.equals(id) || CHANNELS.equals(id);
+    }
+
+    /**
+     * Handles the payloads which are used by the network manager itself.
+     * @param id the id of the payload
+     * @param buf the payload, which is released by this method
+     * @param state the state of the connection
+     * @param listener the listener
+     */
+    private static void handleInternal(@NotNull ResourceLocation id, @NotNull FriendlyByteBuf buf, @NotNull ConnectionState state, @NotNull BlueberryPacketListener listener) {
+        BlueberryPacketFlow flow = state.flow == BlueberryPacketFlow.TO_CLIENT ? BlueberryPacketFlow.TO_SERVER : BlueberryPacketFlow.TO_CLIENT;
+        try {
+            if (BUNDLE.equals(id)) {
+                while (buf.isReadable()) {
+                    int key = buf.readVarInt();
+                    ResourceLocation packetId = key == 0 ? buf.readResourceLocation() : state.getIncomingId(key - 1);
+                    FriendlyByteBuf data = new FriendlyByteBuf(buf.readSlice(buf.readVarInt()));
+                    Supplier<BlueberryPacket<?>> blueberryPacketConstructor = key == 0 ? getPacket(packetId, flow) : state.getIncomingPacket(key - 1);
+                    if (packetId == null || blueberryPacketConstructor == null) {
+                        LOGGER.warn("Skipping unknown packet {} (#{}) in bundle", packetId, key - 1);
+                        continue;
+                    }
+                    if (!tryAcquire(state, packetId, flow)) continue;
+                    dispatch(read(packetId, blueberryPacketConstructor, data, flow, state), listener, state);
+                }
+            } else if (PACKET.equals(id)) {
+                int index = buf.readVarInt();
+                ResourceLocation packetId = state.getIncomingId(index);
+                Supplier<BlueberryPacket<?>> blueberryPacketConstructor = state.getIncomingPacket(index);
+                if (packetId == null || blueberryPacketConstructor == null) {
+                    LOGGER.warn("Skipping unknown packet {} (#{})", packetId, index);
+                    return;
+                }
+                if (!tryAcquire(state, packetId, flow)) return;
+                dispatch(read(packetId, blueberryPacketConstructor, buf, flow, state), listener, state);
+            } else if (CHANNELS.equals(id) && flow == BlueberryPacketFlow.TO_CLIENT) {
+                ChannelTable clientBound = ChannelTable.read(buf);
+                ChannelTable serverBound = ChannelTable.read(buf);
+                state.setIncoming(clientBound, clientBound.resolve(BlueberryPacketFlow.TO_CLIENT));
+                state.setOutgoing(serverBound);
+            }
+        } finally {
+            buf.release();
+        }
+    }
+
+    /**
+     * Sends the channel tables to the client, if they have not been sent yet.
+     * @param connection the connection
+     * @param state the state of the connection
+     */
+    private static void sendChannelTable(@NotNull Connection connection, @NotNull ConnectionState state) {
+        if (state.flow != BlueberryPacketFlow.TO_CLIENT || !state.markChannelTableSent()) return;
+        ChannelTables tables = getChannelTables();
+        // the client may use the server bound indexes as soon as it receives the table
+        state.setIncoming(tables.serverBound, tables.serverBoundPackets);
+        ByteBuf buf = allocate(BlueberryPacketFlow.TO_CLIENT, 0);
+        FriendlyByteBuf friendlyByteBuf = new FriendlyByteBuf(buf);
+        tables.clientBound.write(friendlyByteBuf);
+        tables.serverBound.write(friendlyByteBuf);
+        // the client only knows the indexes once it has received the table
+        sendPayload(connection, state, CHANNELS, buf, () -> state.setOutgoing(tables.clientBound));
+    }
+
+    @NotNull
+    private static ChannelTables getChannelTables() {
+        ChannelTables tables = channelTables;
+        if (tables == null) {
+            tables = new ChannelTables(ChannelTable.of(clientBoundPacketMap.keySet()), ChannelTable.of(serverBoundPacketMap.keySet()));
+            channelTables = tables;
+        }
+        return tables;
+    }
+
+    /**
+     * Handles the packet on the thread of its execution context.
+     * @param blueberryPacket the packet
+     * @param listener the listener
+     * @param state the state of the connection
+     */
+    private static void dispatch(@NotNull BlueberryPacket<?> blueberryPacket, @NotNull BlueberryPacketListener listener, @NotNull ConnectionState state) {
+        switch (blueberryPacket.getExecutionContext()) {
+            case MAIN:
+                // exceptions are logged in both cases, like the packets handled on the main thread by vanilla
+                if (state.getMainThreadBacklog() == 0 && isMainThread(state)) {
+                    handlePacketSafely(blueberryPacket, listener);
+                } else {
+                    state.queueMainThread(() -> {
+                        if (listener.getConnection().isConnected()) handlePacketSafely(blueberryPacket, listener);
+                    });
+                }
+                break;
+            case ASYNC:
+                ASYNC_EXECUTOR.execute(() -> handlePacketSafely(blueberryPacket, listener));
+                break;
+            default:
+                handlePacket(blueberryPacket, listener);
+                break;
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static void handlePacket(@NotNull BlueberryPacket<?> blueberryPacket, @NotNull BlueberryPacketListener listener) {
+        ((BlueberryPacket) blueberryPacket).handle(listener);
+    }
+
+    private static void handlePacketSafely(@NotNull BlueberryPacket<?> blueberryPacket, @NotNull BlueberryPacketListener listener) {
+        try {
+            handlePacket(blueberryPacket, listener);
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Failed to handle packet " + blueberryPacket.getId(), ex);
+        }
+    }
+
+    private static boolean isMainThread(@NotNull ConnectionState state) {
+        if (state.flow == BlueberryPacketFlow.TO_SERVER) return Minecraft.getInstance().isSameThread();
+        MinecraftServer server = getServer();
+        return server != null && server.isSameThread();
+    }
+
+    @Nullable
+    private static FriendlyByteBuf getData(@NotNull ClientboundCustomPayloadPacket packet) {
+        // getData() returns a copy, read the data itself
+        return (FriendlyByteBuf) CLIENTBOUND_CUSTOM_PAYLOAD_PACKET_REF_DATA_FIELD.get(packet);
+    }
+
+    @NotNull
+    private static BlueberryPacket<?> read(@NotNull ResourceLocation id, @NotNull Supplier<BlueberryPacket<?>> blueberryPacketConstructor, @NotNull FriendlyByteBuf buf, @NotNull BlueberryPacketFlow flow, @Nullable ConnectionState state) {
+        ChannelStats stats = getStats(id, flow);
+        int size = buf.readableBytes();
+        stats.count(size);
+        if (state != null) state.count(id, flow, size);
+        long start = System.nanoTime();
+        BlueberryPacket<?> blueberryPacket = blueberryPacketConstructor.get();
+        try {
+            PacketCompression compression = blueberryPacket.getCompression();
+            blueberryPacket.read(compression.isEnabled() ? new FriendlyByteBuf(compression.decompress(buf, getMaxUncompressedSize(flow))) : buf);
         } catch (IOException ex) {
-            LOGGER.warn("Failed to handle incoming server bound packet for " + id, ex);
+            LOGGER.warn("Failed to handle incoming " + getName(flow) + " packet for " + id, ex);
+        } finally {
+            stats.decodeTime.record(System.nanoTime() - start);
         }
-        buf.release();
         return blueberryPacket;
     }
 
-    public static void sendToServer(@NotNull BlueberryPacket<?> packet) {
+    /**
+     * Sends the packet to the server which the client is connected to.
+     * @param packet the packet
+     * @return the result
+     */
+    @NotNull
+    public static SendResult sendToServer(@NotNull BlueberryPacket<?> packet) {
         LocalPlayer player = Minecraft.getInstance().player;
-        if (player == null) return;
-        sendToServer(player.connection.getConnection(), packet);
+        if (player == null) return SendResult.DROPPED;
+        return sendToServer(player.connection.getConnection(), packet);
+    }
+
+    /**
+     * Sends the packet to the server over the connection.
+     * @param connection the connection
+     * @param packet the packet
+     * @return the result
+     */
+    @NotNull
+    public static SendResult sendToServer(@NotNull Connection connection, @NotNull BlueberryPacket<?> packet) {
+        return send(connection, BlueberryPacketFlow.TO_SERVER, packet);
     }
 
-    public static void sendToServer(@NotNull Connection connection, @NotNull BlueberryPacket<?> packet) {
-        if (!connection.isConnected()) return;
-        ResourceLocation id = packet.getId();
-        FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.buffer());
+    /**
+     * Sends the packet to the player.
+     * @param player the player
+     * @param packet the packet
+     * @return the result
+     */
+    @NotNull
+    public static SendResult sendToClient(@NotNull ServerPlayer player, @NotNull BlueberryPacket<?> packet) {
+        return sendToClient(player.connection.connection, packet);
+    }
+
+    /**
+     * Sends the packet to the client over the connection.
+     * @param connection the connection
+     * @param packet the packet
+     * @return the result
+     */
+    @NotNull
+    public static SendResult sendToClient(@NotNull Connection connection, @NotNull BlueberryPacket<?> packet) {
+        return send(connection, BlueberryPacketFlow.TO_CLIENT, packet);
+    }
+
+    @NotNull
+    private static SendResult send(@NotNull Connection connection, @NotNull BlueberryPacketFlow flow, @NotNull BlueberryPacket<?> packet) {
+        if (!connection.isConnected()) return SendResult.DROPPED;
+        ByteBuf buf = encode(packet, allocate(flow, packet.getSizeHint()), flow);
+        if (buf == null) return SendResult.DROPPED;
+        return sendEncoded(connection, flow, packet, buf);
+    }
+
+    /**
+     * Sends the packet to all players on the server. The packet is encoded only once.
+     * @param packet the packet
+     */
+    public static void broadcast(@NotNull BlueberryPacket<?> packet) {
+        MinecraftServer server = getServer();
+        if (server == null) return;
+        broadcast(server.getPlayerList().getPlayers(), packet);
+    }
+
+    /**
+     * Sends the packet to all players in the level. The packet is encoded only once.
+     * @param level the level
+     * @param packet the packet
+     */
+    public static void broadcast(@NotNull ServerLevel level, @NotNull BlueberryPacket<?> packet) {
+        broadcast(level.players(), packet);
+    }
+
+    /**
+     * Sends the packet to all players who can see the chunk. The packet is encoded only once.
+     * @param level the level
+     * @param chunkPos the position of the chunk
+     * @param packet the packet
+     */
+    public static void broadcastTrackingChunk(@NotNull ServerLevel level, @NotNull ChunkPos chunkPos, @NotNull BlueberryPacket<?> packet) {
+        broadcast(level.getChunkSource().chunkMap.getPlayers(chunkPos, false).collect(Collectors.toList()), packet);
+    }
+
+    /**
+     * Sends the packet to all players on the server who match the predicate. The packet is encoded only once.
+     * @param predicate the predicate
+     * @param packet the packet
+     */
+    public static void broadcast(@NotNull Predicate<ServerPlayer> predicate, @NotNull BlueberryPacket<?> packet) {
+        MinecraftServer server = getServer();
+        if (server == null) return;
+        List<ServerPlayer> players = new ArrayList<>();
+        for (ServerPlayer player : server.getPlayerList().getPlayers()) {
+            if (predicate.test(player)) players.add(player);
+        }
+        broadcast(players, packet);
+    }
+
+    /**
+     * Sends the packet to the players. The packet is encoded only once, and each connection gets a view of the same
+     * buffer.
+     * @param players the players
+     * @param packet the packet
+     */
+    public static void broadcast(@NotNull Collection<ServerPlayer> players, @NotNull BlueberryPacket<?> packet) {
+        if (players.isEmpty()) return;
+        ByteBuf buf = encode(packet, allocate(BlueberryPacketFlow.TO_CLIENT, packet.getSizeHint()), BlueberryPacketFlow.TO_CLIENT);
+        if (buf == null) return;
         try {
-            packet.write(buf);
-        } catch (IOException ex) {
-            LOGGER.warn("Failed to handle outgoing server bound packet for " + id, ex);
+            for (ServerPlayer player : players) {
+                Connection connection = player.connection.connection;
+                if (!connection.isConnected()) continue;
+                sendEncoded(connection, BlueberryPacketFlow.TO_CLIENT, packet, buf.retainedDuplicate());
+            }
+        } finally {
+            buf.release();
+        }
+    }
+
+    /**
+     * Handles the queued main thread packets of the side, then sends the bundled packets of all connections. Called at
+     * the end of every tick.
+     * @param side the side which is ticking, either {@link Side#CLIENT} or {@link Side#SERVER}
+     */
+    public static void tick(@NotNull Side side) {
+        runMainThreadPackets(side == Side.CLIENT ? BlueberryPacketFlow.TO_SERVER : BlueberryPacketFlow.TO_CLIENT);
+        flushBundles();
+    }
+
+    /**
+     * Handles the queued main thread packets of the connections on one side, until the time budget runs out.
+     * @param flow the direction of the packets which are sent from the side
+     */
+    private static void runMainThreadPackets(@NotNull BlueberryPacketFlow flow) {
+        List<ConnectionState> states = new ArrayList<>();
+        for (ConnectionState state : connections.values()) {
+            if (state.flow == flow && state.getMainThreadBacklog() > 0) states.add(state);
+        }
+        long deadline = System.nanoTime() + MAIN_THREAD_BUDGET_NANOS;
+        // one packet of each connection per round, so a flooding connection cannot starve the others
+        while (!states.isEmpty()) {
+            for (Iterator<ConnectionState> it = states.iterator(); it.hasNext(); ) {
+                Runnable task = it.next().pollMainThread();
+                if (task == null) {
+                    it.remove();
+                } else {
+                    task.run();
+                }
+            }
+            if (System.nanoTime() - deadline > 0) {
+                states.removeIf(state -> state.getMainThreadBacklog() == 0);
+                if (!states.isEmpty()) {
+                    mainThreadBudgetExceeded.incrementAndGet();
+                    LOGGER.debug("Deferring the main thread packets of {} connections to the next tick", states.size());
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of packets of the connection which are waiting to be handled on the main thread.
+     * @param connection the connection
+     * @return the backlog
+     */
+    public static int getMainThreadBacklog(@NotNull Connection connection) {
+        ConnectionState state = connections.get(connection);
+        return state == null ? 0 : state.getMainThreadBacklog();
+    }
+
+    /**
+     * Returns the number of packets of all connections on the side which are waiting to be handled on the main thread.
+     * @param side the side, either {@link Side#CLIENT} or {@link Side#SERVER}
+     * @return the backlog
+     */
+    public static int getMainThreadBacklog(@NotNull Side side) {
+        BlueberryPacketFlow flow = side == Side.CLIENT ? BlueberryPacketFlow.TO_SERVER : BlueberryPacketFlow.TO_CLIENT;
+        int backlog = 0;
+        for (ConnectionState state : connections.values()) {
+            if (state.flow == flow) backlog += state.getMainThreadBacklog();
+        }
+        return backlog;
+    }
+
+    /**
+     * @return the number of ticks which ran out of time before handling all queued main thread packets
+     */
+    public static long getMainThreadBudgetExceededCount() {
+        return mainThreadBudgetExceeded.get();
+    }
+
+    /**
+     * Sends the queued packets of the connections which are no longer backed up, and the bundled packets of all
+     * connections.
+     */
+    public static void flushBundles() {
+        connections.forEach((connection, state) -> {
+            if (connection.isConnected()) {
+                state.sendQueued(connection);
+                state.flushBundle(connection);
+            } else if (connections.remove(connection, state)) {
+                state.release();
+            }
+        });
+    }
+
+    /**
+     * Sets the rate limit of the packets of the channel which a connection receives.
+     * @param id the id of the packet
+     * @param limit the limit, or null to use the default limit
+     */
+    public static void setRateLimit(@NotNull ResourceLocation id, @Nullable RateLimit limit) {
+        if (limit == null) {
+            rateLimits.remove(id);
+        } else {
+            rateLimits.put(id, limit);
         }
-        ServerboundCustomPayloadPacket customPayloadPacket = new ServerboundCustomPayloadPacket(id, buf);
-        connection.send(customPayloadPacket);
     }
 
-    public static void sendToClient(@NotNull ServerPlayer player, @NotNull BlueberryPacket<?> packet) {
-        sendToClient(player.connection.connection, packet);
+    /**
+     * Sets the rate limit of the channels which have no limit of their own. There is no default limit by default.
+     * @param limit the limit, or null for no limit
+     */
+    public static void setDefaultRateLimit(@Nullable RateLimit limit) {
+        defaultRateLimit = limit;
+    }
+
+    /**
+     * Sets the watermarks of the bytes which have been passed to a connection but not written to its channel yet.
+     * Above the high watermark, packets with a {@link BackpressurePolicy} are queued until the pending bytes drop to
+     * the low watermark. Defaults to 1 MiB and 4 MiB.
+     * @param low the low watermark
+     * @param high the high watermark
+     */
+    public static void setOutboundWatermarks(int low, int high) {
+        if (low < 0 || high < low) throw new IllegalArgumentException("Invalid watermarks: " + low + ", " + high);
+        lowWatermark = low;
+        highWatermark = high;
+    }
+
+    /**
+     * Sets the maximum number of queued packets per connection. Defaults to 1024.
+     * @param max the maximum number
+     */
+    public static void setMaxQueuedPackets(int max) {
+        if (max < 1) throw new IllegalArgumentException("max must be at least 1");
+        maxQueuedPackets = max;
+    }
+
+    /**
+     * Returns the counters of the channel.
+     * @param id the id of the packet
+     * @param flow the direction of the packet
+     * @return the counters
+     */
+    @NotNull
+    public static ChannelStats getStats(@NotNull ResourceLocation id, @NotNull BlueberryPacketFlow flow) {
+        return (flow == BlueberryPacketFlow.TO_CLIENT ? clientBoundStats : serverBoundStats).computeIfAbsent(id, k -> new ChannelStats());
+    }
+
+    /**
+     * Returns the counters of all channels in the direction which have sent or received a packet.
+     * @param flow the direction of the packets
+     * @return the counters by packet id
+     */
+    @NotNull
+    public static Map<ResourceLocation, ChannelStats> getStats(@NotNull BlueberryPacketFlow flow) {
+        return Collections.unmodifiableMap(flow == BlueberryPacketFlow.TO_CLIENT ? clientBoundStats : serverBoundStats);
+    }
+
+    /**
+     * Returns the counters of the channel for one connection. Only packets which are sent or received while
+     * {@link #setPerConnectionStats(boolean)} is enabled are counted, and the time histograms are always empty.
+     * @param connection the connection
+     * @param id the id of the packet
+     * @param flow the direction of the packet
+     * @return the counters, or null if the connection has not sent or received the packet
+     */
+    @Nullable
+    public static ChannelStats getStats(@NotNull Connection connection, @NotNull ResourceLocation id, @NotNull BlueberryPacketFlow flow) {
+        ConnectionState state = connections.get(connection);
+        return state == null ? null : state.getStats(id, flow);
     }
 
-    public static void sendToClient(@NotNull Connection connection, @NotNull BlueberryPacket<?> packet) {
-        if (!connection.isConnected()) return;
-        ResourceLocation id = packet.getId();
-        FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.buffer());
+    /**
+     * Enables or disables counting the packets of each connection separately. Disabled by default.
+     * @param enabled whether to count the packets per connection
+     */
+    public static void setPerConnectionStats(boolean enabled) {
+        perConnectionStats = enabled;
+    }
+
+    /**
+     * @param connection the connection
+     * @return the number of bytes which have been passed to the connection but not written to its channel yet
+     */
+    public static long getPendingBytes(@NotNull Connection connection) {
+        ConnectionState state = connections.get(connection);
+        return state == null ? 0 : state.getPendingBytes();
+    }
+
+    /**
+     * @param connection the connection
+     * @return the number of packets which are queued because the connection is backed up
+     */
+    public static int getQueuedPackets(@NotNull Connection connection) {
+        ConnectionState state = connections.get(connection);
+        return state == null ? 0 : state.getQueuedPackets();
+    }
+
+    @NotNull
+    private static ConnectionState getState(@NotNull Connection connection, @NotNull BlueberryPacketFlow flow) {
+        return connections.computeIfAbsent(connection, c -> new ConnectionState(flow));
+    }
+
+    /**
+     * Sends the encoded packet, or queues it if the connection is backed up and the packet has a backpressure policy.
+     * @param connection the connection
+     * @param flow the direction of the packet
+     * @param packet the packet
+     * @param buf the encoded packet, which is released by this method
+     * @return the result
+     */
+    @NotNull
+    private static SendResult sendEncoded(@NotNull Connection connection, @NotNull BlueberryPacketFlow flow, @NotNull BlueberryPacket<?> packet, @NotNull ByteBuf buf) {
+        ConnectionState state = getState(connection, flow);
+        sendChannelTable(connection, state);
+        if (packet.getBackpressurePolicy() != BackpressurePolicy.NONE) {
+            synchronized (state) {
+                if (state.isBackedUp()) return state.enqueue(packet, buf);
+            }
+        }
+        write(connection, state, packet, buf);
+        return SendResult.SENT;
+    }
+
+    /**
+     * Sends the encoded packet, or adds it to the bundle of the connection if the packet is bundled. Packets which are
+     * not bundled are sent after the pending bundle, so the packets arrive in the order they were sent.
+     * @param connection the connection
+     * @param state the state of the connection
+     * @param packet the packet
+     * @param buf the encoded packet, which is released by this method
+     */
+    static void write(@NotNull Connection connection, @NotNull ConnectionState state, @NotNull BlueberryPacket<?> packet, @NotNull ByteBuf buf) {
+        BlueberryPacketFlow flow = state.flow;
+        getStats(packet.getId(), flow).count(buf.readableBytes());
+        state.count(packet.getId(), flow, buf.readableBytes());
+        int index = state.getOutgoingIndex(packet.getId());
+        if (packet.isBundled() && state.addToBundle(connection, packet.getId(), index, buf)) {
+            buf.release();
+            return;
+        }
+        state.flushBundle(connection);
+        if (index < 0) {
+            sendPayload(connection, state, packet.getId(), buf);
+            return;
+        }
+        ByteBuf header = allocate(flow, 5);
+        new FriendlyByteBuf(header).writeVarInt(index);
+        sendPayload(connection, state, PACKET, Unpooled.wrappedBuffer(header, buf));
+    }
+
+    /**
+     * Sends the payload as a custom payload packet, and counts it as pending until it has been written.
+     * @param connection the connection
+     * @param state the state of the connection
+     * @param id the id of the payload
+     * @param buf the payload, which is released after the packet is sent
+     * @throws IllegalArgumentException if the payload is too large
+     */
+    static void sendPayload(@NotNull Connection connection, @NotNull ConnectionState state, @NotNull ResourceLocation id, @NotNull ByteBuf buf) {
+        sendPayload(connection, state, id, buf, null);
+    }
+
+    /**
+     * Sends the payload as a custom payload packet, and counts it as pending until it has been written.
+     * @param connection the connection
+     * @param state the state of the connection
+     * @param id the id of the payload
+     * @param buf the payload, which is released after the packet is sent
+     * @param onSent the action to run on the event loop once the packet has been written, or null
+     * @throws IllegalArgumentException if the payload is too large
+     */
+    private static void sendPayload(@NotNull Connection connection, @NotNull ConnectionState state, @NotNull ResourceLocation id, @NotNull ByteBuf buf, @Nullable Runnable onSent) {
+        int size = buf.readableBytes();
+        // the payload of a server bound packet is unpooled and may be read by the integrated server after it is sent
+        ByteBuf toRelease = state.flow == BlueberryPacketFlow.TO_CLIENT && !connection.isMemoryConnection() ? buf : null;
+        if (!connection.isConnected()) {
+            // Connection#send would queue the packet until the channel is gone
+            if (toRelease != null) toRelease.release();
+            return;
+        }
+        Packet<?> packet;
         try {
-            packet.write(buf);
+            if (state.flow == BlueberryPacketFlow.TO_CLIENT) {
+                packet = new ClientboundCustomPayloadPacket(id, toClientPayload(connection, buf));
+            } else {
+                packet = new ServerboundCustomPayloadPacket(id, new FriendlyByteBuf(buf));
+            }
+        } catch (RuntimeException ex) {
+            if (toRelease != null) toRelease.release();
+            throw ex;
+        }
+        state.addPendingBytes(size);
+        connection.send(packet, future -> {
+            // the packet has been encoded or dropped at this point, whether or not the write succeeded
+            if (toRelease != null) toRelease.release();
+            state.removePendingBytes(size);
+            if (onSent != null && future.isSuccess()) onSent.run();
+        });
+    }
+
+    static int getMaxPayloadSize(@NotNull BlueberryPacketFlow flow) {
+        return flow == BlueberryPacketFlow.TO_CLIENT ? MAX_CLIENT_BOUND_PAYLOAD_SIZE : MAX_SERVER_BOUND_PAYLOAD_SIZE;
+    }
+
+    static int getMaxUncompressedSize(@NotNull BlueberryPacketFlow flow) {
+        return flow == BlueberryPacketFlow.TO_CLIENT ? MAX_CLIENT_BOUND_UNCOMPRESSED_SIZE : MAX_SERVER_BOUND_UNCOMPRESSED_SIZE;
+    }
+
+    /**
+     * Allocates a buffer for the payload of a packet.
+     * @param flow the direction of the packet
+     * @param sizeHint the initial capacity, or 0 for the default
+     * @return the buffer
+     */
+    @NotNull
+    static ByteBuf allocate(@NotNull BlueberryPacketFlow flow, int sizeHint) {
+        // ServerboundCustomPayloadPacket#write neither copies nor releases the data, so it cannot be pooled
+        ByteBufAllocator allocator = flow == BlueberryPacketFlow.TO_CLIENT ? PooledByteBufAllocator.DEFAULT : UnpooledByteBufAllocator.DEFAULT;
+        return sizeHint > 0 ? allocator.heapBuffer(sizeHint) : allocator.heapBuffer();
+    }
+
+    /**
+     * Writes the packet into the buffer, and compresses it if the packet has a compression. The buffer is released if
+     * the packet could not be written or was compressed into another buffer.
+     * @param packet the packet
+     * @param buf the buffer
+     * @param flow the direction of the packet
+     * @return the encoded packet, or null if the packet could not be written
+     */
+    @Nullable
+    private static ByteBuf encode(@NotNull BlueberryPacket<?> packet, @NotNull ByteBuf buf, @NotNull BlueberryPacketFlow flow) {
+        ByteBuf out = buf;
+        boolean success = false;
+        long start = System.nanoTime();
+        try {
+            packet.write(new FriendlyByteBuf(buf));
+            PacketCompression compression = packet.getCompression();
+            if (compression.isEnabled()) {
+                out = allocate(flow, 0);
+                compression.compress(buf, out, getMaxUncompressedSize(flow));
+                buf.release();
+            }
+            success = true;
+            getStats(packet.getId(), flow).encodeTime.record(System.nanoTime() - start);
+            return out;
         } catch (IOException ex) {
-            LOGGER.warn("Failed to handle outgoing client bound packet for " + id, ex);
+            LOGGER.warn("Failed to handle outgoing " + getName(flow) + " packet for " + packet.getId(), ex);
+            return null;
+        } finally {
+            if (!success) {
+                if (out != buf) out.release();
+                buf.release();
+            }
+        }
+    }
+
+    /**
+     * Wraps the encoded data for a ClientboundCustomPayloadPacket. On memory connections, the data is copied and
+     * released; otherwise the caller keeps the reference and releases it once the packet has been sent.
+     * @param connection the connection which the packet is sent to
+     * @param buf the data
+     * @return the data of the packet
+     */
+    @NotNull
+    private static FriendlyByteBuf toClientPayload(@NotNull Connection connection, @NotNull ByteBuf buf) {
+        if (connection.isMemoryConnection()) {
+            // the packet is never written, and the receiver reads and releases the data itself
+            try {
+                return new FriendlyByteBuf(Unpooled.copiedBuffer(buf));
+            } finally {
+                buf.release();
+            }
+        }
+        return new SharedPayloadBuf(buf);
+    }
+
+    @NotNull
+    private static String getName(@NotNull BlueberryPacketFlow flow) {
+        return flow == BlueberryPacketFlow.TO_CLIENT ? "client bound" : "server bound";
+    }
+
+    @Nullable
+    private static MinecraftServer getServer() {
+        BlueberryUtil util = Blueberry.getUtil();
+        if (util instanceof BlueberryServer) {
+            return util.asServer().getServer();
+        } else if (util instanceof BlueberryClient) {
+            return util.asClient().getIntegratedServer();
+        }
+        return null;
+    }
+
+    private static final class ChannelTables {
+        private final ChannelTable clientBound;
+        private final ChannelTable serverBound;
+        private final Supplier<BlueberryPacket<?>>[] serverBoundPackets;
+
+        private ChannelTables(@NotNull ChannelTable clientBound, @NotNull ChannelTable serverBound) {
+            this.clientBound = clientBound;
+            this.serverBound = serverBound;
+            this.serverBoundPackets = serverBound.resolve(BlueberryPacketFlow.TO_SERVER);
         }
-        ClientboundCustomPayloadPacket customPayloadPacket = new ClientboundCustomPayloadPacket(id, buf);
-        connection.send(customPayloadPacket);
     }
 }
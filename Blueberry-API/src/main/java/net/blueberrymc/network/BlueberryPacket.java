@@ -11,5 +11,53 @@ public interface BlueberryPacket<T extends BlueberryPacketListener> {
     ResourceLocation getId();
     void read(@NotNull FriendlyByteBuf buf) throws IOException;
     void write(@NotNull FriendlyByteBuf buf) throws IOException;
+
+    /**
+     * Returns the expected size of the written packet in bytes, which is used as the initial capacity of the buffer.
+     * Packets which are usually larger than 256 bytes should override this to avoid growing the buffer while writing.
+     * @return the expected size, or 0 if unknown
+     */
+    default int getSizeHint() {
+        return 0;
+    }
+
+    /**
+     * Returns whether this packet may be bundled with other packets. Bundled packets are sent together in one payload at
+     * the end of the tick, which saves frames and flushes when many small packets are sent in a tick.
+     * @return true if this packet may be delayed until the end of the tick
+     */
+    default boolean isBundled() {
+        return false;
+    }
+
+    /**
+     * Returns the compression of the data of this packet. Both sides look up the compression on their own instance, and
+     * the receiving side does so before reading the packet, so this must not depend on the contents of the packet.
+     * @return the compression
+     */
+    @NotNull
+    default PacketCompression getCompression() {
+        return PacketCompression.NONE;
+    }
+
+    /**
+     * Returns the thread which {@link #handle(BlueberryPacketListener)} is called on. Like the compression, this is
+     * looked up on a packet which has just been read.
+     * @return the execution context
+     */
+    @NotNull
+    default PacketExecutionContext getExecutionContext() {
+        return PacketExecutionContext.IO;
+    }
+
+    /**
+     * Returns what happens to this packet when it is sent to a connection which is backed up.
+     * @return the backpressure policy
+     */
+    @NotNull
+    default BackpressurePolicy getBackpressurePolicy() {
+        return BackpressurePolicy.NONE;
+    }
+
     void handle(@NotNull T packetListener);
 }
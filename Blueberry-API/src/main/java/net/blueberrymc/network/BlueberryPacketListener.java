@@ -1,4 +1,9 @@
 package net.blueberrymc.network;
 
+import net.minecraft.network.Connection;
+import org.jetbrains.annotations.NotNull;
+
 public interface BlueberryPacketListener {
+    @NotNull
+    Connection getConnection();
 }
@@ -0,0 +1,93 @@
+package net.blueberrymc.network;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counters of the packets of one channel in one direction, either across all connections or of one connection.
+ * Bytes are the size of the encoded and compressed data, without the id and the framing.
+ * @see BlueberryNetworkManager#getStats(net.minecraft.resources.ResourceLocation, BlueberryPacketFlow)
+ */
+public final class ChannelStats {
+    final LongAdder packets = new LongAdder();
+    final LongAdder bytes = new LongAdder();
+    final TimeHistogram encodeTime = new TimeHistogram();
+    final TimeHistogram decodeTime = new TimeHistogram();
+    final LongAdder rateLimited = new LongAdder();
+    final LongAdder queued = new LongAdder();
+    final LongAdder coalesced = new LongAdder();
+    final LongAdder dropped = new LongAdder();
+
+    ChannelStats() {}
+
+    /**
+     * Counts a packet which has been sent or received.
+     * @param size the size of the data
+     */
+    void count(int size) {
+        packets.increment();
+        bytes.add(size);
+    }
+
+    /**
+     * @return the number of packets which have been sent to a connection or received from one
+     */
+    public long getPackets() {
+        return packets.sum();
+    }
+
+    /**
+     * @return the number of bytes which have been sent to a connection or received from one
+     */
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    /**
+     * Returns the time spent writing the packets. A broadcast packet is encoded only once. Not recorded per
+     * connection.
+     * @return the histogram
+     */
+    @NotNull
+    public TimeHistogram getEncodeTime() {
+        return encodeTime;
+    }
+
+    /**
+     * Returns the time spent reading the packets. Not recorded per connection.
+     * @return the histogram
+     */
+    @NotNull
+    public TimeHistogram getDecodeTime() {
+        return decodeTime;
+    }
+
+    /**
+     * @return the number of received packets which were dropped because of the rate limit
+     */
+    public long getRateLimited() {
+        return rateLimited.sum();
+    }
+
+    /**
+     * @return the number of sent packets which were queued because the connection was backed up
+     */
+    public long getQueued() {
+        return queued.sum();
+    }
+
+    /**
+     * @return the number of sent packets which replaced a queued packet
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * @return the number of queued packets which were dropped because the queue was full
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+}
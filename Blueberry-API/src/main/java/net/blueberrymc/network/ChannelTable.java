@@ -0,0 +1,74 @@
+package net.blueberrymc.network;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.resources.ResourceLocation;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.function.Supplier;
+
+/**
+ * An ordered table of packet ids. The server sends its tables to the client, and then both sides write the index of a
+ * packet in the table instead of its resource location.
+ */
+final class ChannelTable {
+    static final ChannelTable EMPTY = new ChannelTable(new ResourceLocation[0]);
+    private static final int MAX_SIZE = 65536;
+    private final ResourceLocation[] ids;
+    private final Object2IntMap<ResourceLocation> indexes = new Object2IntOpenHashMap<>();
+
+    private ChannelTable(@NotNull ResourceLocation@NotNull[] ids) {
+        this.ids = ids;
+        this.indexes.defaultReturnValue(-1);
+        for (int i = 0; i < ids.length; i++) indexes.put(ids[i], i);
+    }
+
+    @NotNull
+    static ChannelTable of(@NotNull Collection<ResourceLocation> ids) {
+        return new ChannelTable(ids.toArray(new ResourceLocation[0]));
+    }
+
+    @NotNull
+    static ChannelTable read(@NotNull FriendlyByteBuf buf) {
+        int size = buf.readVarInt();
+        if (size < 0 || size > MAX_SIZE) throw new IllegalArgumentException("Invalid channel table size: " + size);
+        ResourceLocation[] ids = new ResourceLocation[size];
+        for (int i = 0; i < size; i++) ids[i] = buf.readResourceLocation();
+        return new ChannelTable(ids);
+    }
+
+    void write(@NotNull FriendlyByteBuf buf) {
+        buf.writeVarInt(ids.length);
+        for (ResourceLocation id : ids) buf.writeResourceLocation(id);
+    }
+
+    /**
+     * Returns the index of the packet id.
+     * @param id the packet id
+     * @return the index, or -1 if the id is not in this table
+     */
+    int indexOf(@NotNull ResourceLocation id) {
+        return indexes.getInt(id);
+    }
+
+    @Nullable
+    ResourceLocation get(int index) {
+        return index >= 0 && index < ids.length ? ids[index] : null;
+    }
+
+    /**
+     * Looks up the registered packet of each id in this table.
+     * @param flow the direction of the packets
+     * @return the packet constructors by index, containing null for the ids which are not registered on this side
+     */
+    @SuppressWarnings("unchecked")
+    @NotNull
+    Supplier<BlueberryPacket<?>>@NotNull[] resolve(@NotNull BlueberryPacketFlow flow) {
+        Supplier<BlueberryPacket<?>>[] constructors = new Supplier[ids.length];
+        for (int i = 0; i < ids.length; i++) constructors[i] = BlueberryNetworkManager.getPacket(ids[i], flow);
+        return constructors;
+    }
+}
@@ -0,0 +1,287 @@
+package net.blueberrymc.network;
+
+import io.netty.buffer.ByteBuf;
+import net.minecraft.network.Connection;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.resources.ResourceLocation;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Blueberry's state of a {@link Connection}. Kept in a weak map by {@link BlueberryNetworkManager}, so it must not
+ * reference the connection. The queued main thread packets reference it through their listener, so {@link #release()}
+ * must be called when the connection is closed.
+ */
+class ConnectionState {
+    /**
+     * The direction of the packets which are sent from this side of the connection.
+     */
+    final BlueberryPacketFlow flow;
+    private final AtomicBoolean channelTableSent = new AtomicBoolean();
+    private volatile ChannelTable outgoing = ChannelTable.EMPTY;
+    private volatile ChannelTable incoming = ChannelTable.EMPTY;
+    @SuppressWarnings("unchecked")
+    private volatile Supplier<BlueberryPacket<?>>[] incomingPackets = new Supplier[0];
+    private final Queue<Runnable> mainThreadQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger mainThreadBacklog = new AtomicInteger();
+    private final Map<ResourceLocation, TokenBucket> buckets = new HashMap<>();
+    private final Map<ResourceLocation, ChannelStats> clientBoundStats = new ConcurrentHashMap<>();
+    private final Map<ResourceLocation, ChannelStats> serverBoundStats = new ConcurrentHashMap<>();
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private volatile boolean congested;
+    private final Queue<QueuedPacket> outgoingQueue = new ArrayDeque<>();
+    private ByteBuf bundle;
+
+    ConnectionState(@NotNull BlueberryPacketFlow flow) {
+        this.flow = flow;
+    }
+
+    /**
+     * Marks the channel table as sent to the other side.
+     * @return false if the table has already been sent
+     */
+    boolean markChannelTableSent() {
+        return channelTableSent.compareAndSet(false, true);
+    }
+
+    /**
+     * Sets the table of the packets which are sent from this side, after the other side has received it.
+     * @param table the table
+     */
+    void setOutgoing(@NotNull ChannelTable table) {
+        this.outgoing = table;
+    }
+
+    /**
+     * Sets the table of the packets which are received by this side.
+     * @param table the table
+     * @param packets the packet constructors by index
+     */
+    void setIncoming(@NotNull ChannelTable table, @Nullable Supplier<BlueberryPacket<?>>@NotNull[] packets) {
+        this.incomingPackets = packets;
+        this.incoming = table;
+    }
+
+    /**
+     * Returns the index of the packet in the table which the other side knows.
+     * @param id the id of the packet
+     * @return the index, or -1 if the packet has to be sent with its id
+     */
+    int getOutgoingIndex(@NotNull ResourceLocation id) {
+        return outgoing.indexOf(id);
+    }
+
+    @Nullable
+    Supplier<BlueberryPacket<?>> getIncomingPacket(int index) {
+        Supplier<BlueberryPacket<?>>[] packets = incomingPackets;
+        return index >= 0 && index < packets.length ? packets[index] : null;
+    }
+
+    @Nullable
+    ResourceLocation getIncomingId(int index) {
+        return incoming.get(index);
+    }
+
+    /**
+     * Queues the handling of a packet which is handled on the main thread.
+     * @param task the task
+     */
+    void queueMainThread(@NotNull Runnable task) {
+        mainThreadQueue.add(task);
+        mainThreadBacklog.incrementAndGet();
+    }
+
+    @Nullable
+    Runnable pollMainThread() {
+        Runnable task = mainThreadQueue.poll();
+        if (task != null) mainThreadBacklog.decrementAndGet();
+        return task;
+    }
+
+    /**
+     * @return the number of packets which are waiting to be handled on the main thread
+     */
+    int getMainThreadBacklog() {
+        return mainThreadBacklog.get();
+    }
+
+    /**
+     * Takes a token from the bucket of the channel. Only called by the thread which receives the packets of the
+     * connection.
+     * @param id the id of the packet
+     * @param limit the rate limit of the channel
+     * @return false if the packet exceeds the rate limit
+     */
+    boolean tryAcquire(@NotNull ResourceLocation id, @NotNull RateLimit limit) {
+        long now = System.nanoTime();
+        TokenBucket bucket = buckets.get(id);
+        if (bucket == null || bucket.limit != limit) {
+            bucket = new TokenBucket(limit, now);
+            buckets.put(id, bucket);
+        }
+        return bucket.tryAcquire(now);
+    }
+
+    /**
+     * Counts a packet which has been sent or received, if per connection stats are enabled.
+     * @param id the id of the packet
+     * @param flow the direction of the packet
+     * @param size the size of the data
+     */
+    void count(@NotNull ResourceLocation id, @NotNull BlueberryPacketFlow flow, int size) {
+        if (!BlueberryNetworkManager.perConnectionStats) return;
+        (flow == BlueberryPacketFlow.TO_CLIENT ? clientBoundStats : serverBoundStats).computeIfAbsent(id, k -> new ChannelStats()).count(size);
+    }
+
+    @Nullable
+    ChannelStats getStats(@NotNull ResourceLocation id, @NotNull BlueberryPacketFlow flow) {
+        return (flow == BlueberryPacketFlow.TO_CLIENT ? clientBoundStats : serverBoundStats).get(id);
+    }
+
+    /**
+     * Called when a payload is passed to the connection.
+     * @param size the size of the payload
+     */
+    void addPendingBytes(int size) {
+        if (pendingBytes.addAndGet(size) > BlueberryNetworkManager.highWatermark) congested = true;
+    }
+
+    /**
+     * Called when a payload has been written to the channel, or failed to.
+     * @param size the size of the payload
+     */
+    void removePendingBytes(int size) {
+        if (pendingBytes.addAndGet(-size) <= BlueberryNetworkManager.lowWatermark) congested = false;
+    }
+
+    long getPendingBytes() {
+        return pendingBytes.get();
+    }
+
+    /**
+     * Returns whether packets with a {@link BackpressurePolicy} other than {@link BackpressurePolicy#NONE} have to be
+     * queued, either because the connection is over the high watermark or because older packets are still queued.
+     * @return true if the connection is backed up
+     */
+    synchronized boolean isBackedUp() {
+        return congested || !outgoingQueue.isEmpty();
+    }
+
+    synchronized int getQueuedPackets() {
+        return outgoingQueue.size();
+    }
+
+    /**
+     * Queues the encoded packet until the connection is below the low watermark.
+     * @param packet the packet
+     * @param buf the encoded packet
+     * @return {@link SendResult#COALESCED} if the packet replaced a queued packet, {@link SendResult#QUEUED} otherwise
+     */
+    @NotNull
+    synchronized SendResult enqueue(@NotNull BlueberryPacket<?> packet, @NotNull ByteBuf buf) {
+        ResourceLocation id = packet.getId();
+        if (packet.getBackpressurePolicy() == BackpressurePolicy.COALESCE) {
+            for (QueuedPacket queued : outgoingQueue) {
+                if (queued.packet.getId().equals(id)) {
+                    queued.buf.release();
+                    queued.packet = packet;
+                    queued.buf = buf;
+                    BlueberryNetworkManager.getStats(id, flow).coalesced.increment();
+                    return SendResult.COALESCED;
+                }
+            }
+        }
+        if (outgoingQueue.size() >= BlueberryNetworkManager.maxQueuedPackets) {
+            QueuedPacket oldest = outgoingQueue.poll();
+            oldest.buf.release();
+            BlueberryNetworkManager.getStats(oldest.packet.getId(), flow).dropped.increment();
+        }
+        outgoingQueue.add(new QueuedPacket(packet, buf));
+        BlueberryNetworkManager.getStats(id, flow).queued.increment();
+        return SendResult.QUEUED;
+    }
+
+    /**
+     * Sends the queued packets until the connection is over the high watermark again.
+     * @param connection the connection
+     */
+    synchronized void sendQueued(@NotNull Connection connection) {
+        QueuedPacket queued;
+        while (!congested && (queued = outgoingQueue.poll()) != null) {
+            BlueberryNetworkManager.write(connection, this, queued.packet, queued.buf);
+        }
+    }
+
+    /**
+     * Appends the encoded packet to the bundle, sending the bundle first if the packet does not fit.
+     * @param connection the connection
+     * @param id the id of the packet
+     * @param index the index of the packet in the channel table, or -1
+     * @param buf the encoded packet
+     * @return false if the packet is too large to be bundled
+     */
+    synchronized boolean addToBundle(@NotNull Connection connection, @NotNull ResourceLocation id, int index, @NotNull ByteBuf buf) {
+        int maxSize = BlueberryNetworkManager.getMaxPayloadSize(flow);
+        // varint index, resource location, varint length and data
+        int size = (index < 0 ? id.toString().length() + 3 : 0) + 8 + buf.readableBytes();
+        if (size > maxSize) return false;
+        if (bundle != null && bundle.readableBytes() + size > maxSize) flushBundle(connection);
+        if (bundle == null) bundle = BlueberryNetworkManager.allocate(flow, 0);
+        FriendlyByteBuf friendlyByteBuf = new FriendlyByteBuf(bundle);
+        friendlyByteBuf.writeVarInt(index + 1);
+        if (index < 0) friendlyByteBuf.writeResourceLocation(id);
+        friendlyByteBuf.writeVarInt(buf.readableBytes());
+        bundle.writeBytes(buf, buf.readerIndex(), buf.readableBytes());
+        return true;
+    }
+
+    /**
+     * Sends the bundled packets, if any.
+     * @param connection the connection
+     */
+    synchronized void flushBundle(@NotNull Connection connection) {
+        if (bundle == null) return;
+        ByteBuf buf = bundle;
+        bundle = null;
+        if (connection.isConnected()) {
+            BlueberryNetworkManager.sendPayload(connection, this, BlueberryNetworkManager.BUNDLE, buf);
+        } else {
+            buf.release();
+        }
+    }
+
+    /**
+     * Releases the buffers and the queued packets of the closed connection.
+     */
+    synchronized void release() {
+        mainThreadQueue.clear();
+        mainThreadBacklog.set(0);
+        QueuedPacket queued;
+        while ((queued = outgoingQueue.poll()) != null) queued.buf.release();
+        if (bundle != null) {
+            bundle.release();
+            bundle = null;
+        }
+    }
+
+    private static final class QueuedPacket {
+        private BlueberryPacket<?> packet;
+        private ByteBuf buf;
+
+        private QueuedPacket(@NotNull BlueberryPacket<?> packet, @NotNull ByteBuf buf) {
+            this.packet = packet;
+            this.buf = buf;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package net.blueberrymc.network;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.FriendlyByteBuf;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The compression of the data of a {@link BlueberryPacket}. Unless the compression is {@link #NONE}, the data starts
+ * with the varint size of the uncompressed data, or 0 if the data follows uncompressed.
+ */
+public final class PacketCompression {
+    /**
+     * The data is never compressed and has no size prefix.
+     */
+    public static final PacketCompression NONE = new PacketCompression(-1, Deflater.DEFAULT_COMPRESSION);
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(Deflater::new);
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[8192]);
+    private final int threshold;
+    private final int level;
+
+    private PacketCompression(int threshold, int level) {
+        this.threshold = threshold;
+        this.level = level;
+    }
+
+    /**
+     * Compresses the data of every packet.
+     * @param level the compression level, 0-9 or {@link Deflater#DEFAULT_COMPRESSION}
+     * @return the compression
+     */
+    @NotNull
+    public static PacketCompression deflate(int level) {
+        return threshold(0, level);
+    }
+
+    /**
+     * Compresses the data of the packets which are at least as large as the threshold, with the default level.
+     * @param threshold the minimum size in bytes
+     * @return the compression
+     */
+    @NotNull
+    public static PacketCompression threshold(int threshold) {
+        return threshold(threshold, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Compresses the data of the packets which are at least as large as the threshold.
+     * @param threshold the minimum size in bytes
+     * @param level the compression level, 0-9 or {@link Deflater#DEFAULT_COMPRESSION}
+     * @return the compression
+     */
+    @Contract("_, _ -> new")
+    @NotNull
+    public static PacketCompression threshold(int threshold, int level) {
+        if (threshold < 0) throw new IllegalArgumentException("threshold must not be negative");
+        if ((level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) && level != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+        return new PacketCompression(threshold, level);
+    }
+
+    /**
+     * @return false if this is {@link #NONE}
+     */
+    public boolean isEnabled() {
+        return threshold >= 0;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Writes the size prefix and the data. The data is compressed if it is at least as large as the threshold and the
+     * compressed data is smaller. Data larger than the maximum size is never compressed, because the receiver would
+     * reject it.
+     * @param in the data
+     * @param out the buffer to write to
+     * @param maxSize the maximum uncompressed size that the receiver accepts
+     */
+    void compress(@NotNull ByteBuf in, @NotNull ByteBuf out, int maxSize) {
+        int size = in.readableBytes();
+        FriendlyByteBuf friendlyByteBuf = new FriendlyByteBuf(out);
+        int start = out.writerIndex();
+        if (size > 0 && size >= threshold && size <= maxSize) {
+            friendlyByteBuf.writeVarInt(size);
+            Deflater deflater = DEFLATER.get();
+            deflater.setLevel(level);
+            setInput(deflater, in);
+            deflater.finish();
+            byte[] buffer = BUFFER.get();
+            try {
+                while (!deflater.finished() && out.writerIndex() - start < size) {
+                    out.writeBytes(buffer, 0, deflater.deflate(buffer));
+                }
+                if (deflater.finished() && out.writerIndex() - start < size) {
+                    in.skipBytes(size);
+                    return;
+                }
+            } finally {
+                deflater.reset();
+            }
+            // not worth it
+            out.writerIndex(start);
+        }
+        friendlyByteBuf.writeVarInt(0);
+        out.writeBytes(in);
+    }
+
+    /**
+     * Reads the size prefix and decompresses the data if needed.
+     * @param in the data, which is read to the end
+     * @param maxSize the maximum uncompressed size, which is checked before anything is allocated
+     * @return the uncompressed data, which is either the input buffer or an unpooled buffer
+     * @throws IOException if the data is malformed or the declared size is larger than the maximum size
+     */
+    @NotNull
+    ByteBuf decompress(@NotNull ByteBuf in, int maxSize) throws IOException {
+        int size = new FriendlyByteBuf(in).readVarInt();
+        if (size == 0) return in;
+        if (size < 0 || size > maxSize) {
+            throw new IOException("Badly compressed packet - size of " + size + " is larger than protocol maximum of " + maxSize);
+        }
+        Inflater inflater = INFLATER.get();
+        setInput(inflater, in);
+        byte[] data = new byte[size];
+        try {
+            int actualSize = inflater.inflate(data);
+            if (actualSize != size || !inflater.finished()) {
+                throw new IOException("Badly compressed packet - actual length of uncompressed payload " + actualSize + " does not match declared size " + size);
+            }
+        } catch (DataFormatException ex) {
+            throw new IOException("Badly compressed packet", ex);
+        } finally {
+            inflater.reset();
+        }
+        in.skipBytes(in.readableBytes());
+        return Unpooled.wrappedBuffer(data);
+    }
+
+    private static void setInput(@NotNull Deflater deflater, @NotNull ByteBuf buf) {
+        if (buf.hasArray()) {
+            deflater.setInput(buf.array(), buf.arrayOffset() + buf.readerIndex(), buf.readableBytes());
+        } else {
+            byte[] bytes = new byte[buf.readableBytes()];
+            buf.getBytes(buf.readerIndex(), bytes);
+            deflater.setInput(bytes);
+        }
+    }
+
+    private static void setInput(@NotNull Inflater inflater, @NotNull ByteBuf buf) {
+        if (buf.hasArray()) {
+            inflater.setInput(buf.array(), buf.arrayOffset() + buf.readerIndex(), buf.readableBytes());
+        } else {
+            byte[] bytes = new byte[buf.readableBytes()];
+            buf.getBytes(buf.readerIndex(), bytes);
+            inflater.setInput(bytes);
+        }
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        return isEnabled() ? "PacketCompression{threshold=" + threshold + ", level=" + level + "}" : "PacketCompression{NONE}";
+    }
+}
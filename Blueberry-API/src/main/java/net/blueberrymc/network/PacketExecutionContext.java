@@ -0,0 +1,24 @@
+package net.blueberrymc.network;
+
+/**
+ * The thread which {@link BlueberryPacket#handle(BlueberryPacketListener)} is called on. Packets are always decoded on
+ * the thread which received them.
+ */
+public enum PacketExecutionContext {
+    /**
+     * The thread which received the packet, which is the Netty I/O thread on the server and the main thread on the
+     * client. The handler must not block and must not access the world without synchronization.
+     */
+    IO,
+    /**
+     * The main thread of the server or the client. Packets are queued per connection and handled in order at the end
+     * of the tick, within a time budget shared by all connections.
+     */
+    MAIN,
+    /**
+     * A thread of the shared packet handler pool. Packets of the same connection may be handled concurrently and out
+     * of order.
+     */
+    ASYNC,
+    ;
+}
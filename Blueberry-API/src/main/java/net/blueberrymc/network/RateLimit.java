@@ -0,0 +1,47 @@
+package net.blueberrymc.network;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A token bucket limit on the number of packets of a channel which a connection may receive. Each connection has its
+ * own bucket, which holds up to {@link #getBurst()} tokens and refills at {@link #getPacketsPerSecond()}.
+ * @see BlueberryNetworkManager#setRateLimit(net.minecraft.resources.ResourceLocation, RateLimit)
+ */
+public final class RateLimit {
+    private final double packetsPerSecond;
+    private final int burst;
+
+    private RateLimit(double packetsPerSecond, int burst) {
+        this.packetsPerSecond = packetsPerSecond;
+        this.burst = burst;
+    }
+
+    /**
+     * Creates a rate limit.
+     * @param packetsPerSecond the sustained rate
+     * @param burst the number of packets which may be received at once
+     * @return the rate limit
+     */
+    @Contract("_, _ -> new")
+    @NotNull
+    public static RateLimit of(double packetsPerSecond, int burst) {
+        if (!(packetsPerSecond > 0)) throw new IllegalArgumentException("packetsPerSecond must be positive");
+        if (burst < 1) throw new IllegalArgumentException("burst must be at least 1");
+        return new RateLimit(packetsPerSecond, burst);
+    }
+
+    public double getPacketsPerSecond() {
+        return packetsPerSecond;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        return "RateLimit{packetsPerSecond=" + packetsPerSecond + ", burst=" + burst + "}";
+    }
+}
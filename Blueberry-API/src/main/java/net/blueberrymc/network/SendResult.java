@@ -0,0 +1,24 @@
+package net.blueberrymc.network;
+
+/**
+ * The result of sending a {@link BlueberryPacket} to a connection.
+ */
+public enum SendResult {
+    /**
+     * The packet was sent, or added to the bundle of the tick.
+     */
+    SENT,
+    /**
+     * The connection is backed up, and the packet was queued.
+     */
+    QUEUED,
+    /**
+     * The connection is backed up, and the packet replaced a queued packet with the same id.
+     */
+    COALESCED,
+    /**
+     * The packet was not sent, because the connection is closed or the packet could not be written.
+     */
+    DROPPED,
+    ;
+}
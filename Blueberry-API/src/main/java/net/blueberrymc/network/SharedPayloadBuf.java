@@ -0,0 +1,25 @@
+package net.blueberrymc.network;
+
+import io.netty.buffer.ByteBuf;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.network.protocol.game.ClientboundCustomPayloadPacket;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The data of a {@link ClientboundCustomPayloadPacket}, backed by a pooled buffer or a retained view of a payload which
+ * is shared with other packets. {@link ClientboundCustomPayloadPacket#write(FriendlyByteBuf)} writes a copy of the data
+ * and never releases it, so the buffer is released by the listener of the send future. The data is only copied once:
+ * {@link #copy()} returns a non-retained view which the packet writes into the output buffer.
+ * <p>Memory connections pass the packet object to the other side without writing it, so they must not use this class.
+ */
+class SharedPayloadBuf extends FriendlyByteBuf {
+    SharedPayloadBuf(@NotNull ByteBuf source) {
+        super(source);
+    }
+
+    @NotNull
+    @Override
+    public ByteBuf copy() {
+        return duplicate();
+    }
+}
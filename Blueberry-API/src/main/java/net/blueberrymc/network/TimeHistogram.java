@@ -0,0 +1,66 @@
+package net.blueberrymc.network;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations with power of two buckets. Bucket {@code i} counts the durations from {@code 2^i} up to
+ * {@code 2^(i+1)} nanoseconds, and bucket 0 also counts durations under a nanosecond.
+ */
+public final class TimeHistogram {
+    public static final int BUCKETS = 64;
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder totalNanos = new LongAdder();
+
+    TimeHistogram() {
+        for (int i = 0; i < BUCKETS; i++) buckets[i] = new LongAdder();
+    }
+
+    void record(long nanos) {
+        buckets[nanos <= 1 ? 0 : 63 - Long.numberOfLeadingZeros(nanos)].increment();
+        totalNanos.add(nanos);
+    }
+
+    /**
+     * @param bucket the index of the bucket
+     * @return the number of durations in the bucket
+     */
+    public long getCount(int bucket) {
+        return buckets[bucket].sum();
+    }
+
+    /**
+     * @return the number of recorded durations
+     */
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) count += bucket.sum();
+        return count;
+    }
+
+    /**
+     * @return the average duration in nanoseconds, or 0 if nothing has been recorded
+     */
+    public long getAverageNanos() {
+        long count = getCount();
+        return count == 0 ? 0 : totalNanos.sum() / count;
+    }
+
+    /**
+     * Returns the upper bound of the bucket which contains the percentile.
+     * @param percentile the percentile, between 0 and 1
+     * @return the duration in nanoseconds, or 0 if nothing has been recorded
+     */
+    public long getPercentileNanos(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) count += counts[i] = buckets[i].sum();
+        if (count == 0) return 0;
+        long target = (long) Math.ceil(count * Math.max(0, Math.min(1, percentile)));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= target && seen > 0) return i == BUCKETS - 1 ? Long.MAX_VALUE : (2L << i) - 1;
+        }
+        return Long.MAX_VALUE;
+    }
+}
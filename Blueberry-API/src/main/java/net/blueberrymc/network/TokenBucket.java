@@ -0,0 +1,31 @@
+package net.blueberrymc.network;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The token bucket of a {@link RateLimit} for one channel of one connection.
+ */
+class TokenBucket {
+    final RateLimit limit;
+    private double tokens;
+    private long lastRefill;
+
+    TokenBucket(@NotNull RateLimit limit, long now) {
+        this.limit = limit;
+        this.tokens = limit.getBurst();
+        this.lastRefill = now;
+    }
+
+    /**
+     * Takes a token from the bucket.
+     * @param now the current {@link System#nanoTime()}
+     * @return false if the bucket is empty
+     */
+    boolean tryAcquire(long now) {
+        tokens = Math.min(limit.getBurst(), tokens + (now - lastRefill) * limit.getPacketsPerSecond() / 1_000_000_000.0);
+        lastRefill = now;
+        if (tokens < 1) return false;
+        tokens--;
+        return true;
+    }
+}
@@ -1,5 +1,9 @@
 package net.blueberrymc.network.client.handshake;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import net.blueberrymc.common.Blueberry;
 import net.blueberrymc.network.mod.ModInfo;
 import net.minecraft.network.FriendlyByteBuf;
 import net.minecraft.network.protocol.Packet;
@@ -9,31 +13,76 @@ import org.jetbrains.annotations.NotNull;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * The mod list of the server, sent after the status response as the size of the list followed by the list. The list
+ * of {@link net.blueberrymc.common.bml.ModManager#getModInfos()} is sorted, so a server and a client with the same
+ * mods encode it to the same bytes. The client compares the packet with the encoding of its own list and skips
+ * decoding it if they are equal.
+ * <p>The encoded packet is cached for the list returned by {@link net.blueberrymc.common.bml.ModManager#getModInfos()},
+ * which only changes when a mod is loaded or unloaded.
+ */
 public class ClientboundBlueberryHandshakePacket implements Packet<ClientStatusPacketListener> {
+    private static volatile Encoded encoded;
+    private final long digest;
     private final List<ModInfo> modInfos;
 
     public ClientboundBlueberryHandshakePacket(@NotNull List<ModInfo> modInfos) {
+        this.digest = modInfos == Blueberry.getModManager().getModInfos() ? Blueberry.getModManager().getModListDigest() : ModInfo.digest(modInfos);
         this.modInfos = modInfos;
     }
 
     public ClientboundBlueberryHandshakePacket(@NotNull FriendlyByteBuf friendlyByteBuf) {
-        this.modInfos = new ArrayList<>();
-        int size = friendlyByteBuf.readInt();
+        List<ModInfo> own = Blueberry.getModManager().getModInfos();
+        ByteBuf ownBuf = getEncoded(own).buf;
+        int length = ownBuf.readableBytes();
+        if (friendlyByteBuf.readableBytes() == length && ByteBufUtil.equals(ownBuf, ownBuf.readerIndex(), friendlyByteBuf, friendlyByteBuf.readerIndex(), length)) {
+            // same mods as ours
+            friendlyByteBuf.skipBytes(length);
+            this.modInfos = own;
+            this.digest = Blueberry.getModManager().getModListDigest();
+            return;
+        }
+        this.modInfos = readModInfos(friendlyByteBuf, friendlyByteBuf.readInt());
+        this.digest = ModInfo.digest(modInfos);
+    }
+
+    @NotNull
+    private static List<ModInfo> readModInfos(@NotNull FriendlyByteBuf friendlyByteBuf, int size) {
+        List<ModInfo> modInfos = new ArrayList<>();
         for (int i = 0; i < size; i++) {
             String modId = friendlyByteBuf.readUtf();
             String version = friendlyByteBuf.readUtf();
             modInfos.add(new ModInfo(modId, version));
         }
+        return modInfos;
     }
 
     @Override
     public void write(@NotNull FriendlyByteBuf friendlyByteBuf) {
-        List<ModInfo> modInfoList = modInfos;
-        friendlyByteBuf.writeInt(modInfoList.size());
-        for (ModInfo modInfo : modInfoList) {
-            friendlyByteBuf.writeUtf(modInfo.modId);
-            friendlyByteBuf.writeUtf(modInfo.version);
+        ByteBuf buf = getEncoded(modInfos).buf;
+        // does not move the reader index, so the buffer can be shared between threads
+        friendlyByteBuf.writeBytes(buf, buf.readerIndex(), buf.readableBytes());
+    }
+
+    @NotNull
+    private static Encoded getEncoded(@NotNull List<ModInfo> modInfos) {
+        Encoded encoded = ClientboundBlueberryHandshakePacket.encoded;
+        if (encoded == null || encoded.modInfos != modInfos) {
+            encoded = new Encoded(modInfos, encode(modInfos));
+            if (modInfos == Blueberry.getModManager().getModInfos()) ClientboundBlueberryHandshakePacket.encoded = encoded;
+        }
+        return encoded;
+    }
+
+    @NotNull
+    private static ByteBuf encode(@NotNull List<ModInfo> modInfos) {
+        FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.buffer());
+        buf.writeInt(modInfos.size());
+        for (ModInfo modInfo : modInfos) {
+            buf.writeUtf(modInfo.modId);
+            buf.writeUtf(modInfo.version);
         }
+        return buf.unwrap().asReadOnly();
     }
 
     @Override
@@ -41,13 +90,33 @@ public class ClientboundBlueberryHandshakePacket implements Packet<ClientStatusP
         ((ClientBlueberryHandshakePacketListener) clientBlueberryPacketListener).handleBlueberryHandshakeResponse(this);
     }
 
+    /**
+     * Returns the digest of the mod list of the server.
+     * @return the digest
+     * @see ModInfo#digest(java.util.Collection)
+     */
+    public long getDigest() {
+        return digest;
+    }
+
     /**
      * Returns a list of mods that the server has installed. Used for version comparison, if different version
-     * between client were used, the client will be rejected.
+     * between client were used, the client will be rejected. If the packet matches the mods of the client, this is the
+     * list of the client.
      * @return the list of mods
      */
     @NotNull
     public List<ModInfo> getModInfos() {
         return modInfos;
     }
+
+    private static final class Encoded {
+        private final List<ModInfo> modInfos;
+        private final ByteBuf buf;
+
+        private Encoded(@NotNull List<ModInfo> modInfos, @NotNull ByteBuf buf) {
+            this.modInfos = modInfos;
+            this.buf = buf;
+        }
+    }
 }
@@ -1,7 +1,15 @@
 package net.blueberrymc.network.mod;
 
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import org.jetbrains.annotations.NotNull;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
 public class ModInfo {
     public final String modId;
     public final String version;
@@ -40,4 +48,20 @@ public class ModInfo {
     public String getDisplayString() {
         return modId + "@" + version;
     }
+
+    /**
+     * Computes a 64-bit hash of the mod list, which does not depend on the order of the list.
+     * @param modInfos the mod list
+     * @return the digest
+     */
+    public static long digest(@NotNull Collection<ModInfo> modInfos) {
+        List<ModInfo> sorted = new ArrayList<>(modInfos);
+        sorted.sort(Comparator.comparing((ModInfo modInfo) -> modInfo.modId).thenComparing(modInfo -> modInfo.version));
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        for (ModInfo modInfo : sorted) {
+            hasher.putString(modInfo.modId, StandardCharsets.UTF_8).putByte((byte) 0);
+            hasher.putString(modInfo.version, StandardCharsets.UTF_8).putByte((byte) 0);
+        }
+        return hasher.hash().asLong();
+    }
 }
@@ -0,0 +1,175 @@
+package net.minecraft.launchwrapper;
+
+import org.apache.logging.log4j.Level;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Launches the game in a child JVM that uses a dynamic CDS (Class Data Sharing) archive.
+ * <p>The archive is stored at {@code cache/cds/<fingerprint>.jsa} in the game directory, where the fingerprint is
+ * computed from the JVM, its options, the classpath and the contents of the mods directory. The first launch with a
+ * fingerprint is a training run that writes the archive when the game exits, and later launches with the same
+ * fingerprint map it. Archives with other fingerprints are deleted, so the archive is regenerated whenever the mod set
+ * changes.
+ * <p>The JVM options of the current JVM, including Java agents, are passed to the child, which is the only JVM that
+ * runs the game. The options in {@code -Dblueberry.cds.childJvmArgs} (separated by spaces) are added after them, so
+ * that the heap size can be given to the child only and the current JVM, which just waits for the child, can be
+ * started with a small heap. When a debugger ({@code -agentlib:jdwp}) is attached to the current JVM, the game is
+ * launched without CDS in the current JVM, because the debugger could not be attached to a child as well.
+ * <p>Only the JDK and the classes excluded from {@link LaunchClassLoader} (log4j, lwjgl and so on) can be archived.
+ * {@link LaunchClassLoader} has a null parent and defines the classes of Minecraft, the libraries and the mods itself,
+ * so they are not covered by the archive.
+ * <p>Enabled with {@code -Dblueberry.cds=true}. Requires Java 13 or later.
+ */
+final class ClassDataSharing {
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("blueberry.cds", "false"));
+    private static final String CHILD_PROPERTY = "blueberry.cds.child";
+    private static final String CHILD_JVM_ARGS = System.getProperty("blueberry.cds.childJvmArgs", "");
+
+    private ClassDataSharing() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Relaunches the game with a CDS archive if the CDS mode is enabled and the current JVM is not already the
+     * relaunched one. This method does not return if the game was relaunched.
+     * @param gameDir the game directory
+     * @param args the arguments passed to {@link Launch#main(String[])}
+     */
+    static void relaunchIfEnabled(@NotNull File gameDir, @NotNull String@NotNull[] args) {
+        if (!ENABLED || Boolean.getBoolean(CHILD_PROPERTY)) return;
+        if (!isSupported()) {
+            LogWrapper.warning("CDS mode requires Java 13 or later (running %s), launching without it", System.getProperty("java.specification.version"));
+            return;
+        }
+        List<String> inputArgs = ManagementFactory.getRuntimeMXBean().getInputArguments();
+        if (inputArgs.stream().anyMatch(arg -> arg.startsWith("-agentlib:jdwp") || arg.startsWith("-Xrunjdwp"))) {
+            LogWrapper.info("A debugger is attached to this JVM, launching without CDS");
+            return;
+        }
+        try {
+            File dir = new File(gameDir, "cache/cds");
+            Files.createDirectories(dir.toPath());
+            List<String> jvmArgs = getForwardedArguments(inputArgs);
+            File archive = new File(dir, computeFingerprint(gameDir, jvmArgs) + ".jsa");
+            deleteStaleArchives(dir, archive);
+            List<String> command = new ArrayList<>();
+            command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath());
+            command.addAll(jvmArgs);
+            if (archive.isFile()) {
+                LogWrapper.info("Using CDS archive %s", archive.getAbsolutePath());
+                command.add("-XX:SharedArchiveFile=" + archive.getAbsolutePath());
+            } else {
+                LogWrapper.info("No CDS archive for the current mod set, this launch will create %s on exit", archive.getAbsolutePath());
+                command.add("-XX:ArchiveClassesAtExit=" + archive.getAbsolutePath());
+            }
+            command.add("-D" + CHILD_PROPERTY + "=true");
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(Launch.class.getName());
+            command.addAll(Arrays.asList(args));
+            Process process = new ProcessBuilder(command).inheritIO().start();
+            System.exit(process.waitFor());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.exit(1);
+        } catch (IOException | RuntimeException e) {
+            LogWrapper.log(Level.ERROR, e, "Could not relaunch with CDS archive, launching without it");
+        }
+    }
+
+    private static boolean isSupported() {
+        String version = System.getProperty("java.specification.version");
+        if (version.startsWith("1.")) return false;
+        try {
+            return Integer.parseInt(version) >= 13;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the JVM options which are passed to the child: the options of the current JVM, followed by the options
+     * in {@code blueberry.cds.childJvmArgs}.
+     * @param inputArgs the JVM options of the current JVM
+     * @return the options
+     */
+    @NotNull
+    private static List<String> getForwardedArguments(@NotNull List<String> inputArgs) {
+        List<String> args = new ArrayList<>();
+        for (String arg : inputArgs) {
+            if (arg.startsWith("-XX:SharedArchiveFile=") || arg.startsWith("-XX:ArchiveClassesAtExit=") || arg.startsWith("-Djava.class.path=")) continue;
+            args.add(arg);
+        }
+        for (String arg : CHILD_JVM_ARGS.trim().split("\\s+")) {
+            if (!arg.isEmpty()) args.add(arg);
+        }
+        return args;
+    }
+
+    @NotNull
+    private static String computeFingerprint(@NotNull File gameDir, @NotNull List<String> jvmArgs) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        update(digest, System.getProperty("java.vm.version"));
+        update(digest, System.getProperty("java.home"));
+        update(digest, System.getProperty("java.class.path"));
+        // the archive can only be mapped with the same GC, heap size, compressed oops and so on
+        update(digest, Integer.toString(jvmArgs.size()));
+        for (String arg : jvmArgs) {
+            update(digest, arg);
+        }
+        Path modsDir = new File(gameDir, "mods").toPath();
+        if (Files.isDirectory(modsDir)) {
+            List<Path> files;
+            try (Stream<Path> stream = Files.walk(modsDir)) {
+                files = stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+            for (Path file : files) {
+                update(digest, modsDir.relativize(file).toString());
+                update(digest, Long.toString(Files.size(file)));
+                update(digest, Long.toString(Files.getLastModifiedTime(file).toMillis()));
+            }
+        }
+        byte[] hash = digest.digest();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 16; i++) {
+            sb.append(String.format("%02x", hash[i]));
+        }
+        return sb.toString();
+    }
+
+    private static void update(@NotNull MessageDigest digest, @NotNull String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static void deleteStaleArchives(@NotNull File dir, @NotNull File current) {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".jsa"));
+        if (files == null) return;
+        for (File file : files) {
+            if (file.equals(current)) continue;
+            LogWrapper.info("Deleting outdated CDS archive %s", file.getName());
+            if (!file.delete()) {
+                LogWrapper.warning("Could not delete outdated CDS archive %s", file.getAbsolutePath());
+            }
+        }
+    }
+}
@@ -50,6 +50,7 @@ public class Launch {
         OptionSet options = parser.parse(args);
         minecraftHome = options.valueOf(gameDirOption);
         assetsDir = options.valueOf(assetsDirOption);
+        ClassDataSharing.relaunchIfEnabled(minecraftHome == null ? new File(".") : minecraftHome, args);
         String profileName = options.valueOf(profileOption);
         List<String> tweakClassNames = new ArrayList<>(options.valuesOf(tweakClassOption));
         List<String> argumentList = new ArrayList<>();
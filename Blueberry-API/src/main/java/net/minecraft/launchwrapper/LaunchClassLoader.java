@@ -5,10 +5,17 @@ import java.net.JarURLConnection;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
 import java.security.CodeSigner;
 import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.jar.Attributes;
 import java.util.jar.Attributes.Name;
 import java.util.jar.JarEntry;
@@ -31,18 +38,32 @@ public class LaunchClassLoader extends URLClassLoader {
 
     private final Set<String> classLoaderExceptions = new HashSet<>();
     private final Set<String> transformerExceptions = new HashSet<>();
+    private volatile PrefixMatcher classLoaderExceptionMatcher = PrefixMatcher.EMPTY;
+    private volatile PrefixMatcher transformerExceptionMatcher = PrefixMatcher.EMPTY;
     private final Map<String,byte[]> resourceCache = new ConcurrentHashMap<>(1000);
     private final Set<String> negativeResourceCache = Collections.newSetFromMap(new ConcurrentHashMap<>());
 
     private IClassNameTransformer renameTransformer;
 
     private final ThreadLocal<byte[]> loadBuffer = new ThreadLocal<>();
+    private final ThreadLocal<MessageDigest> cacheDigest = ThreadLocal.withInitial(LaunchClassLoader::newDigest);
+    private final List<String> transformerCacheKeys = new ArrayList<>();
+    // same order as transformers, null for the transformers whose output is never cached
+    private final List<String> transformerVersions = new ArrayList<>(2);
+    private final Set<String> uncachedTransformers = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private volatile byte[] transformerFingerprint = new byte[0];
+    private File transformerCacheDir = null;
 
     private static final String[] RESERVED_NAMES = {"CON", "PRN", "AUX", "NUL", "COM1", "COM2", "COM3", "COM4", "COM5", "COM6", "COM7", "COM8", "COM9", "LPT1", "LPT2", "LPT3", "LPT4", "LPT5", "LPT6", "LPT7", "LPT8", "LPT9"};
 
     private static final boolean DEBUG = Boolean.parseBoolean(System.getProperty("legacy.debugClassLoading", "false"));
     private static final boolean DEBUG_FINER = DEBUG && Boolean.parseBoolean(System.getProperty("legacy.debugClassLoadingFiner", "false"));
     private static final boolean DEBUG_SAVE = DEBUG && Boolean.parseBoolean(System.getProperty("legacy.debugClassLoadingSave", "false"));
+    private static final boolean TRANSFORMER_CACHE = Boolean.parseBoolean(System.getProperty("legacy.transformerCache", "false"));
+    private static final boolean TRANSFORMER_CACHE_VERIFY = TRANSFORMER_CACHE && Boolean.parseBoolean(System.getProperty("legacy.transformerCacheVerify", "false"));
+    private static final long TRANSFORMER_CACHE_MAX_AGE = TimeUnit.DAYS.toMillis(Long.getLong("legacy.transformerCacheMaxAgeDays", 30L));
+    private static final long TRANSFORMER_CACHE_TOUCH_INTERVAL = TimeUnit.DAYS.toMillis(1);
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
     private static File tempFolder = null;
 
     @SuppressWarnings("ResultOfMethodCallIgnored")
@@ -65,6 +86,9 @@ public class LaunchClassLoader extends URLClassLoader {
         addTransformerExclusion("org.bouncycastle.");
         addTransformerExclusion("net.minecraft.launchwrapper.injector.");
 
+        // the output of Mixin depends on the mixin configs and classes of every mod, and it has side effects
+        addUncachedTransformer("org.spongepowered.asm.mixin.transformer.Proxy");
+
         if (DEBUG_SAVE) {
             int x = 1;
             tempFolder = new File(Launch.minecraftHome, "CLASSLOADER_TEMP");
@@ -86,6 +110,7 @@ public class LaunchClassLoader extends URLClassLoader {
         try {
             IClassTransformer transformer = (IClassTransformer) loadClass(transformerClassName).getDeclaredConstructor().newInstance();
             transformers.add(transformer);
+            transformerVersions.add(uncachedTransformers.contains(transformerClassName) ? null : transformerClassName + "@" + getTransformerVersion(transformer.getClass()));
             if (transformer instanceof IClassNameTransformer && renameTransformer == null) {
                 renameTransformer = (IClassNameTransformer) transformer;
             }
@@ -101,26 +126,22 @@ public class LaunchClassLoader extends URLClassLoader {
             throw new ClassNotFoundException(name);
         }
 
-        for (final String exception : classLoaderExceptions) {
-            if (name.startsWith(exception)) {
-                return parent.loadClass(name);
-            }
+        if (classLoaderExceptionMatcher.matches(name)) {
+            return parent.loadClass(name);
         }
 
         if (cachedClasses.containsKey(name)) {
             return cachedClasses.get(name);
         }
 
-        for (final String exception : transformerExceptions) {
-            if (name.startsWith(exception)) {
-                try {
-                    final Class<?> clazz = super.findClass(name);
-                    cachedClasses.put(name, clazz);
-                    return clazz;
-                } catch (ClassNotFoundException e) {
-                    invalidClasses.add(name);
-                    throw e;
-                }
+        if (transformerExceptionMatcher.matches(name)) {
+            try {
+                final Class<?> clazz = super.findClass(name);
+                cachedClasses.put(name, clazz);
+                return clazz;
+            } catch (ClassNotFoundException e) {
+                invalidClasses.add(name);
+                throw e;
             }
         }
 
@@ -267,21 +288,259 @@ public class LaunchClassLoader extends URLClassLoader {
     private byte[] runTransformers(final String name, final String transformedName, byte[] basicClass) {
         if (DEBUG_FINER) {
             LogWrapper.finest("Beginning transform of {%s (%s)} Start Length: %d", name, transformedName, (basicClass == null ? 0 : basicClass.length));
-            for (final IClassTransformer transformer : transformers) {
+        }
+        if (!TRANSFORMER_CACHE) {
+            basicClass = applyTransformers(name, transformedName, basicClass, 0, transformers.size());
+        } else {
+            // uncached transformers run on every load, the runs of cacheable transformers around them are cached
+            int from = 0;
+            while (from < transformers.size()) {
+                int to = from;
+                while (to < transformers.size() && transformerVersions.get(to) != null) {
+                    to++;
+                }
+                if (to > from) {
+                    basicClass = runCachedTransformers(name, transformedName, basicClass, from, to);
+                }
+                if (to < transformers.size()) {
+                    basicClass = applyTransformers(name, transformedName, basicClass, to, to + 1);
+                }
+                from = to + 1;
+            }
+        }
+        if (DEBUG_FINER) {
+            LogWrapper.finest("Ending transform of {%s (%s)} Start Length: %d", name, transformedName, (basicClass == null ? 0 : basicClass.length));
+        }
+        return basicClass;
+    }
+
+    private byte[] runCachedTransformers(final String name, final String transformedName, final byte[] basicClass, final int from, final int to) {
+        if (basicClass == null) {
+            return applyTransformers(name, transformedName, null, from, to);
+        }
+        final String key = getTransformerCacheKey(name, transformedName, basicClass, from, to);
+        final byte[] cached = readCachedClass(key);
+        if (cached != null) {
+            if (!TRANSFORMER_CACHE_VERIFY) {
+                return cached;
+            }
+            final byte[] fresh = applyTransformers(name, transformedName, basicClass, from, to);
+            if (!Arrays.equals(cached, fresh)) {
+                LogWrapper.warning("Transformer cache entry %s for {%s (%s)} does not match a fresh transform, replacing it", key, name, transformedName);
+                if (fresh != null) {
+                    writeCachedClass(key, fresh);
+                } else {
+                    deleteCachedClass(key);
+                }
+            }
+            return fresh;
+        }
+        final byte[] transformed = applyTransformers(name, transformedName, basicClass, from, to);
+        if (transformed != null) {
+            writeCachedClass(key, transformed);
+        }
+        return transformed;
+    }
+
+    private byte[] applyTransformers(final String name, final String transformedName, byte[] basicClass, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            final IClassTransformer transformer = transformers.get(i);
+            if (DEBUG_FINER) {
                 final String transName = transformer.getClass().getName();
                 LogWrapper.finest("Before Transformer {%s (%s)} %s: %d", name, transformedName, transName, (basicClass == null ? 0 : basicClass.length));
                 basicClass = transformer.transform(name, transformedName, basicClass);
                 LogWrapper.finest("After  Transformer {%s (%s)} %s: %d", name, transformedName, transName, (basicClass == null ? 0 : basicClass.length));
-            }
-            LogWrapper.finest("Ending transform of {%s (%s)} Start Length: %d", name, transformedName, (basicClass == null ? 0 : basicClass.length));
-        } else {
-            for (final IClassTransformer transformer : transformers) {
+            } else {
                 basicClass = transformer.transform(name, transformedName, basicClass);
             }
         }
         return basicClass;
     }
 
+    /**
+     * Excludes a transformer from the transformer cache. The transformer runs on every class load, and only the output
+     * of the other transformers is cached. Use this for transformers whose output depends on state that is not known
+     * when they are registered (like Mixin, which depends on the configs of every mod), or which have side effects.
+     * Must be called before the transformer is registered.
+     * @param transformerClassName the class name of the transformer
+     */
+    public void addUncachedTransformer(@NotNull String transformerClassName) {
+        uncachedTransformers.add(transformerClassName);
+    }
+
+    /**
+     * Adds a key that is mixed into the key of every cached transformer output. Transformers are already identified by
+     * their class name, class bytes and code source, so this is only needed when the output of a cached transformer
+     * also depends on external state (for example, a set of configuration files).
+     * @param key the key
+     */
+    public synchronized void addTransformerCacheKey(@NotNull String key) {
+        transformerCacheKeys.add(key);
+        final MessageDigest digest = newDigest();
+        for (final String s : transformerCacheKeys) {
+            digest.update(s.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        transformerFingerprint = digest.digest();
+    }
+
+    @NotNull
+    private String getTransformerVersion(@NotNull Class<?> clazz) {
+        final MessageDigest digest = newDigest();
+        final CodeSource codeSource = clazz.getProtectionDomain().getCodeSource();
+        if (codeSource != null && codeSource.getLocation() != null) {
+            digest.update(codeSource.getLocation().toString().getBytes(StandardCharsets.UTF_8));
+            // the transformer may use other classes of its jar, so a replaced jar invalidates its entries
+            if ("file".equals(codeSource.getLocation().getProtocol())) {
+                final File file = new File(codeSource.getLocation().getPath());
+                digest.update(Long.toString(file.length()).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(Long.toString(file.lastModified()).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        final InputStream in = clazz.getResourceAsStream("/" + clazz.getName().replace('.', '/') + ".class");
+        if (in != null) {
+            try {
+                digest.update(readFully(in));
+            } finally {
+                closeSilently(in);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    @NotNull
+    private String getTransformerCacheKey(@NotNull String name, @NotNull String transformedName, @NotNull byte@NotNull[] basicClass, int from, int to) {
+        final MessageDigest digest = cacheDigest.get();
+        digest.reset();
+        digest.update(transformerFingerprint);
+        for (int i = from; i < to; i++) {
+            digest.update(transformerVersions.get(i).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        digest.update(name.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(transformedName.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(basicClass);
+        return toHex(digest.digest());
+    }
+
+    @NotNull
+    private synchronized File getTransformerCacheDir() {
+        if (transformerCacheDir == null) {
+            final File dir = new File(Launch.minecraftHome == null ? new File(".") : Launch.minecraftHome, "cache/transformers");
+            transformerCacheDir = dir;
+            final Thread thread = new Thread(() -> pruneTransformerCache(dir), "Transformer cache cleanup");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return transformerCacheDir;
+    }
+
+    /**
+     * Deletes the entries which have not been read or written for {@link #TRANSFORMER_CACHE_MAX_AGE}. The keys change
+     * whenever a transformer or a class changes, so old entries are never read again.
+     */
+    private static void pruneTransformerCache(@NotNull File dir) {
+        final long deadline = System.currentTimeMillis() - TRANSFORMER_CACHE_MAX_AGE;
+        final File[] buckets = dir.listFiles(File::isDirectory);
+        if (buckets == null) {
+            return;
+        }
+        int deleted = 0;
+        for (final File bucket : buckets) {
+            final File[] files = bucket.listFiles();
+            if (files == null) {
+                continue;
+            }
+            for (final File file : files) {
+                if (file.lastModified() < deadline && file.delete()) {
+                    deleted++;
+                }
+            }
+        }
+        if (deleted > 0) {
+            LogWrapper.fine("Deleted %d unused transformer cache entries", deleted);
+        }
+    }
+
+    @NotNull
+    private File getCachedClassFile(@NotNull String key) {
+        return new File(new File(getTransformerCacheDir(), key.substring(0, 2)), key + ".class");
+    }
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    @Nullable
+    private byte[] readCachedClass(@NotNull String key) {
+        final File file = getCachedClassFile(key);
+        final long lastModified = file.lastModified();
+        if (lastModified == 0L) {
+            return null;
+        }
+        try {
+            final byte[] data = Files.readAllBytes(file.toPath());
+            // the modification time is the last use for pruneTransformerCache
+            final long now = System.currentTimeMillis();
+            if (now - lastModified > TRANSFORMER_CACHE_TOUCH_INTERVAL) {
+                file.setLastModified(now);
+            }
+            return data;
+        } catch (NoSuchFileException ex) {
+            return null; // pruned in the meantime
+        } catch (IOException ex) {
+            LogWrapper.log(Level.WARN, ex, "Could not read transformer cache entry %s", key);
+            return null;
+        }
+    }
+
+    private void writeCachedClass(@NotNull String key, @NotNull byte@NotNull[] data) {
+        final File file = getCachedClassFile(key);
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+            final File tmp = File.createTempFile(key, ".tmp", file.getParentFile());
+            try {
+                Files.write(tmp.toPath(), data);
+                try {
+                    Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException ex) {
+                    Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tmp.toPath());
+            }
+        } catch (IOException ex) {
+            LogWrapper.log(Level.WARN, ex, "Could not write transformer cache entry %s", key);
+        }
+    }
+
+    private void deleteCachedClass(@NotNull String key) {
+        try {
+            Files.deleteIfExists(getCachedClassFile(key).toPath());
+        } catch (IOException ex) {
+            LogWrapper.log(Level.WARN, ex, "Could not delete transformer cache entry %s", key);
+        }
+    }
+
+    @NotNull
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @NotNull
+    private static String toHex(@NotNull byte@NotNull[] bytes) {
+        final char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
     @Override
     public void addURL(@NotNull final URL url) {
         super.addURL(url);
@@ -333,12 +592,16 @@ public class LaunchClassLoader extends URLClassLoader {
         return Collections.unmodifiableList(transformers);
     }
 
-    public void addClassLoaderExclusion(@NotNull String toExclude) {
-        classLoaderExceptions.add(toExclude);
+    public synchronized void addClassLoaderExclusion(@NotNull String toExclude) {
+        if (classLoaderExceptions.add(toExclude)) {
+            classLoaderExceptionMatcher = PrefixMatcher.compile(classLoaderExceptions);
+        }
     }
 
-    public void addTransformerExclusion(@NotNull String toExclude) {
-        transformerExceptions.add(toExclude);
+    public synchronized void addTransformerExclusion(@NotNull String toExclude) {
+        if (transformerExceptions.add(toExclude)) {
+            transformerExceptionMatcher = PrefixMatcher.compile(transformerExceptions);
+        }
     }
 
     @NotNull
@@ -0,0 +1,89 @@
+package net.minecraft.launchwrapper;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable character trie used to check whether a class name starts with any of the registered prefixes.
+ * The cost of {@link #matches(String)} depends on the length of the name, not on the number of prefixes.
+ */
+final class PrefixMatcher {
+    static final PrefixMatcher EMPTY = new PrefixMatcher(new Node(new char[0], new Node[0], false));
+
+    private final Node root;
+
+    private PrefixMatcher(@NotNull Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Compiles the prefixes into a new matcher.
+     * @param prefixes the prefixes
+     * @return the matcher
+     */
+    @NotNull
+    static PrefixMatcher compile(@NotNull Collection<String> prefixes) {
+        if (prefixes.isEmpty()) return EMPTY;
+        Builder root = new Builder();
+        for (String prefix : prefixes) {
+            Builder node = root;
+            for (int i = 0; i < prefix.length(); i++) {
+                node = node.children.computeIfAbsent(prefix.charAt(i), c -> new Builder());
+            }
+            node.terminal = true;
+        }
+        return new PrefixMatcher(root.build());
+    }
+
+    /**
+     * Checks if the name starts with any of the prefixes.
+     * @param name the name to check
+     * @return true if any prefix matches; false otherwise
+     */
+    boolean matches(@NotNull String name) {
+        Node node = root;
+        if (node.terminal) return true;
+        for (int i = 0; i < name.length(); i++) {
+            int index = Arrays.binarySearch(node.keys, name.charAt(i));
+            if (index < 0) return false;
+            node = node.children[index];
+            if (node.terminal) return true;
+        }
+        return false;
+    }
+
+    private static final class Node {
+        private final char[] keys;
+        private final Node[] children;
+        private final boolean terminal;
+
+        private Node(@NotNull char@NotNull[] keys, @NotNull Node@NotNull[] children, boolean terminal) {
+            this.keys = keys;
+            this.children = children;
+            this.terminal = terminal;
+        }
+    }
+
+    private static final class Builder {
+        private final TreeMap<Character, Builder> children = new TreeMap<>();
+        private boolean terminal = false;
+
+        @NotNull
+        private Node build() {
+            // nothing below a terminal node can change the result, so the subtree is dropped
+            if (terminal) return new Node(new char[0], new Node[0], true);
+            char[] keys = new char[children.size()];
+            Node[] nodes = new Node[children.size()];
+            int i = 0;
+            for (Map.Entry<Character, Builder> entry : children.entrySet()) {
+                keys[i] = entry.getKey();
+                nodes[i++] = entry.getValue().build();
+            }
+            return new Node(keys, nodes, false);
+        }
+    }
+}
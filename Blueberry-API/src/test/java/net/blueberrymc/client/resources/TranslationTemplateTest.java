@@ -0,0 +1,41 @@
+package net.blueberrymc.client.resources;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.MissingFormatArgumentException;
+
+public class TranslationTemplateTest {
+    @Test
+    public void testFormat() {
+        assertFormat("no arguments");
+        assertFormat("Hello, %s!", "world");
+        assertFormat("%s and %s", "a", "b");
+        assertFormat("%2$s before %1$s", "a", "b");
+        assertFormat("%1$s %1$s %s", "a", "b");
+        assertFormat("100%% done%n", "unused");
+        assertFormat("null: %s", (Object) null);
+    }
+
+    @Test
+    public void testFallback() {
+        // handled by the formatter
+        assertFormat("%d items", 3);
+        assertFormat("%.2f", 1.5);
+        assertFormat("%-5s|", "a");
+    }
+
+    @Test
+    public void testText() {
+        Assert.assertEquals("%s and %s", TranslationTemplate.compile("%s and %s").getText());
+    }
+
+    @Test(expected = MissingFormatArgumentException.class)
+    public void testMissingArgument() {
+        TranslationTemplate.compile("%s and %s").format(new Object[] { "a" });
+    }
+
+    private static void assertFormat(String text, Object... args) {
+        Assert.assertEquals(String.format(text, args), TranslationTemplate.compile(text).format(args));
+    }
+}
@@ -0,0 +1,54 @@
+package net.blueberrymc.common.resources;
+
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.packs.PackType;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Collections;
+
+public class ModResourceIndexTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testDirectory() throws IOException {
+        File root = folder.getRoot();
+        write(root, "mod.yml");
+        write(root, "com/example/Mod.class");
+        write(root, "assets/example/lang/en_us.lang");
+        write(root, "assets/example/textures/item/a.png");
+        write(root, "assets/example/textures/item/a.png.mcmeta");
+        write(root, "data/example/recipes/a.json");
+        ModResourceIndex index = ModResourceIndex.build(root);
+        Assert.assertTrue(index.contains("mod.yml"));
+        Assert.assertTrue(index.contains("assets/example/lang/en_us.lang"));
+        Assert.assertFalse(index.contains("com/example/Mod.class"));
+        Assert.assertEquals(Collections.singleton("example"), index.getNamespaces(PackType.CLIENT_RESOURCES));
+        Assert.assertEquals(Collections.singleton("example"), index.getNamespaces(PackType.SERVER_DATA));
+        Collection<ResourceLocation> textures = index.getResources(PackType.CLIENT_RESOURCES, "example", "textures", Integer.MAX_VALUE, s -> true);
+        Assert.assertEquals(Collections.singletonList(new ResourceLocation("example", "textures/item/a.png")), textures);
+        Assert.assertTrue(index.getResources(PackType.CLIENT_RESOURCES, "example", "textures", 0, s -> true).isEmpty());
+    }
+
+    @Test
+    public void testRebuildSeesNewFiles() throws IOException {
+        File root = folder.getRoot();
+        write(root, "assets/example/lang/en_us.lang");
+        Assert.assertFalse(ModResourceIndex.build(root).contains("assets/example/lang/ja_jp.lang"));
+        write(root, "assets/example/lang/ja_jp.lang");
+        Assert.assertTrue(ModResourceIndex.build(root).contains("assets/example/lang/ja_jp.lang"));
+    }
+
+    private static void write(File root, String path) throws IOException {
+        File file = new File(root, path);
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), new byte[0]);
+    }
+}
@@ -0,0 +1,26 @@
+package net.blueberrymc.common.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ListUtilsTest {
+    @Test
+    public void testIsCompatible() {
+        List<String> list = Arrays.asList("a", "b", "c");
+        Assert.assertTrue(ListUtils.isCompatible(list, list));
+        Assert.assertTrue(ListUtils.isCompatible(list, Arrays.asList("c", "a", "b")));
+        Assert.assertFalse(ListUtils.isCompatible(list, Arrays.asList("a", "b")));
+        Assert.assertFalse(ListUtils.isCompatible(list, Arrays.asList("a", "b", "d")));
+        Assert.assertFalse(ListUtils.isCompatible(list, Collections.emptyList()));
+    }
+
+    @Test
+    public void testJoin() {
+        Assert.assertEquals("a, b", ListUtils.join(Arrays.asList("a", "b"), ", "));
+        Assert.assertEquals("", ListUtils.join(Collections.emptyList(), ", "));
+    }
+}
@@ -0,0 +1,69 @@
+package net.blueberrymc.common.util.tools.liveCompiler;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class JavaCompilerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testStateFileIsNotInOutput() throws IOException {
+        File src = folder.newFolder("src");
+        File out = new File(folder.getRoot(), "out");
+        write(src, "A.java", "public class A {}");
+        JavaCompiler.compileAll(src, out, true);
+        Assert.assertTrue(new File(out, "A.class").isFile());
+        Assert.assertTrue(JavaCompiler.getStateFile(out).isFile());
+        String[] files = out.list();
+        Assert.assertNotNull(files);
+        Assert.assertArrayEquals(new String[] { "A.class" }, files);
+    }
+
+    @Test
+    public void testRecompilesDependentsTransitively() throws IOException {
+        File src = folder.newFolder("src");
+        File out = new File(folder.getRoot(), "out");
+        write(src, "A.java", "public class A { public int value() { return 1; } }");
+        write(src, "B.java", "public class B extends A {}");
+        write(src, "C.java", "public class C { int get(B b) { return b.value(); } }");
+        write(src, "D.java", "public class D {}");
+        JavaCompiler.compileAll(src, out, true);
+        for (String name : new String[] { "A", "B", "C", "D" }) {
+            Assert.assertTrue(new File(out, name + ".class").setLastModified(0));
+        }
+        write(src, "A.java", "public class A { public int value() { return 2; } }");
+        JavaCompiler.compileAll(src, out, true);
+        Assert.assertNotEquals(0, new File(out, "A.class").lastModified());
+        Assert.assertNotEquals(0, new File(out, "B.class").lastModified());
+        Assert.assertNotEquals(0, new File(out, "C.class").lastModified());
+        Assert.assertEquals(0, new File(out, "D.class").lastModified());
+    }
+
+    @Test
+    public void testRemovesDeletedResources() throws IOException {
+        File src = folder.newFolder("src");
+        File out = new File(folder.getRoot(), "out");
+        write(src, "A.java", "public class A {}");
+        write(src, "assets/test/lang/en_us.lang", "a=b");
+        JavaCompiler.compileAll(src, out, true);
+        Assert.assertTrue(new File(out, "assets/test/lang/en_us.lang").isFile());
+        Assert.assertTrue(new File(src, "assets/test/lang/en_us.lang").delete());
+        JavaCompiler.compileAll(src, out, true);
+        Assert.assertFalse(new File(out, "assets/test/lang/en_us.lang").exists());
+        Assert.assertTrue(new File(out, "A.class").isFile());
+    }
+
+    private static void write(File root, String path, String content) throws IOException {
+        File file = new File(root, path);
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,151 @@
+package net.blueberrymc.config;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ConfigBinderTest {
+    @Test
+    public void testLoad() throws InvalidConfigException {
+        Map<String, Object> data = new HashMap<>();
+        data.put("int", 42);
+        data.put("long", 3000000000L);
+        data.put("byte", 127);
+        data.put("double", 1);
+        data.put("ints", Arrays.asList(1, 2L, 3.0));
+        data.put("strings", Arrays.asList("a", "b"));
+        data.put("mode", "B");
+        Map<String, Object> nested = new HashMap<>();
+        nested.put("value", 5);
+        data.put("nested", nested);
+        TestConfig config = load(data);
+        Assert.assertEquals(42, config.intValue);
+        Assert.assertEquals(3000000000L, config.longValue);
+        Assert.assertEquals(127, config.byteValue);
+        Assert.assertEquals(1.0, config.doubleValue, 0);
+        Assert.assertEquals(Arrays.asList(1, 2, 3), config.ints);
+        Assert.assertEquals(Arrays.asList("a", "b"), config.strings);
+        Assert.assertEquals(Mode.B, config.mode);
+        Assert.assertEquals(5, config.nested);
+    }
+
+    @Test
+    public void testWholeDouble() throws InvalidConfigException {
+        Assert.assertEquals(2, load(Collections.<String, Object>singletonMap("int", 2.0)).intValue);
+    }
+
+    @Test
+    public void testRejectsFraction() {
+        assertInvalid("int", 1.5);
+    }
+
+    @Test
+    public void testRejectsOutOfRange() {
+        assertInvalid("int", 3000000000L);
+        assertInvalid("byte", 128);
+        assertInvalid("long", new BigInteger("9223372036854775808"));
+        assertInvalid("int", Double.NaN);
+    }
+
+    @Test
+    public void testRejectsBelowMin() {
+        assertInvalid("nested.value", -1);
+    }
+
+    @Test
+    public void testRejectsWrongElementType() {
+        assertInvalid("ints", Arrays.asList(1, "two"));
+        assertInvalid("ints", Collections.singletonList(1.5));
+    }
+
+    @Test
+    public void testRejectsUnknownConstant() {
+        assertInvalid("mode", "C");
+    }
+
+    @Test
+    public void testFieldsAreNotModifiedOnError() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("int", 1);
+        data.put("byte", 1000);
+        TestConfig config = new TestConfig();
+        try {
+            ConfigBinder.of(TestConfig.class).load("test.yml", data, config);
+            Assert.fail("expected InvalidConfigException");
+        } catch (InvalidConfigException ignore) {}
+        Assert.assertEquals(10, config.intValue);
+    }
+
+    @Test
+    public void testSaveConvertsListElements() throws InvalidConfigException {
+        TestConfig config = new TestConfig();
+        config.modes = Arrays.asList(Mode.B, Mode.A);
+        config.chars = Arrays.asList('x', 'y');
+        Map<String, Object> saved = new HashMap<>();
+        ConfigBinder.of(TestConfig.class).save(config, (key, value) -> saved.put(key.getPath(), value));
+        Assert.assertEquals("A", saved.get("mode"));
+        Assert.assertEquals(Arrays.asList("B", "A"), saved.get("modes"));
+        Assert.assertEquals(Arrays.asList("x", "y"), saved.get("chars"));
+        Map<String, Object> data = new HashMap<>();
+        data.put("modes", saved.get("modes"));
+        data.put("chars", saved.get("chars"));
+        TestConfig loaded = load(data);
+        Assert.assertEquals(config.modes, loaded.modes);
+        Assert.assertEquals(config.chars, loaded.chars);
+    }
+
+    private static TestConfig load(Map<String, Object> data) throws InvalidConfigException {
+        TestConfig config = new TestConfig();
+        ConfigBinder.of(TestConfig.class).load("test.yml", data, config);
+        return config;
+    }
+
+    private static void assertInvalid(String path, Object value) {
+        Map<String, Object> data = new HashMap<>();
+        String[] keys = path.split("\\.");
+        Map<String, Object> map = data;
+        for (int i = 0; i < keys.length - 1; i++) {
+            Map<String, Object> child = new HashMap<>();
+            map.put(keys[i], child);
+            map = child;
+        }
+        map.put(keys[keys.length - 1], value);
+        try {
+            load(data);
+            Assert.fail("expected InvalidConfigException for " + path + " = " + value);
+        } catch (InvalidConfigException ignore) {}
+    }
+
+    public enum Mode {
+        A, B
+    }
+
+    public static class TestConfig {
+        @ConfigPath("int")
+        public int intValue = 10;
+        @ConfigPath("long")
+        public long longValue;
+        @ConfigPath("byte")
+        public byte byteValue;
+        @ConfigPath("double")
+        public double doubleValue;
+        @ConfigPath("ints")
+        public List<Integer> ints;
+        @ConfigPath("strings")
+        public List<String> strings;
+        @ConfigPath("mode")
+        public Mode mode = Mode.A;
+        @ConfigPath("modes")
+        public List<Mode> modes;
+        @ConfigPath("chars")
+        public List<Character> chars;
+        @ConfigPath(value = "nested.value", min = 0)
+        public int nested;
+    }
+}
@@ -0,0 +1,42 @@
+package net.blueberrymc.network;
+
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.resources.ResourceLocation;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class ChannelTableTest {
+    @Test
+    public void testReadWrite() {
+        ResourceLocation a = new ResourceLocation("blueberry", "a");
+        ResourceLocation b = new ResourceLocation("example", "b/c");
+        ChannelTable table = ChannelTable.of(Arrays.asList(a, b));
+        FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.buffer());
+        table.write(buf);
+        ChannelTable read = ChannelTable.read(buf);
+        Assert.assertEquals(0, buf.readableBytes());
+        Assert.assertEquals(0, read.indexOf(a));
+        Assert.assertEquals(1, read.indexOf(b));
+        Assert.assertEquals(a, read.get(0));
+        Assert.assertEquals(b, read.get(1));
+    }
+
+    @Test
+    public void testUnknown() {
+        ChannelTable table = ChannelTable.of(Arrays.asList(new ResourceLocation("blueberry", "a")));
+        Assert.assertEquals(-1, table.indexOf(new ResourceLocation("blueberry", "b")));
+        Assert.assertNull(table.get(-1));
+        Assert.assertNull(table.get(1));
+        Assert.assertEquals(-1, ChannelTable.EMPTY.indexOf(new ResourceLocation("blueberry", "a")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsInvalidSize() {
+        FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.buffer());
+        buf.writeVarInt(65536 + 1);
+        ChannelTable.read(buf);
+    }
+}
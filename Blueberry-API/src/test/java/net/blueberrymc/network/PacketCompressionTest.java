@@ -0,0 +1,85 @@
+package net.blueberrymc.network;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.FriendlyByteBuf;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+public class PacketCompressionTest {
+    private static final int MAX_SIZE = 65536;
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        byte[] data = new byte[10000];
+        for (int i = 0; i < data.length; i++) data[i] = (byte) (i % 16);
+        ByteBuf out = Unpooled.buffer();
+        PacketCompression.deflate(6).compress(Unpooled.wrappedBuffer(data), out, MAX_SIZE);
+        Assert.assertTrue("data should be compressed", out.readableBytes() < data.length);
+        Assert.assertArrayEquals(data, toArray(PacketCompression.deflate(6).decompress(out, MAX_SIZE)));
+        Assert.assertEquals(0, out.readableBytes());
+    }
+
+    @Test
+    public void testBelowThreshold() throws IOException {
+        byte[] data = new byte[100];
+        ByteBuf out = Unpooled.buffer();
+        PacketCompression.threshold(256).compress(Unpooled.wrappedBuffer(data), out, MAX_SIZE);
+        Assert.assertEquals(0, out.getByte(out.readerIndex()));
+        Assert.assertEquals(data.length + 1, out.readableBytes());
+        Assert.assertArrayEquals(data, toArray(PacketCompression.threshold(256).decompress(out, MAX_SIZE)));
+    }
+
+    @Test
+    public void testIncompressible() throws IOException {
+        byte[] data = new byte[4096];
+        new Random(0).nextBytes(data);
+        ByteBuf out = Unpooled.buffer();
+        PacketCompression.threshold(0).compress(Unpooled.wrappedBuffer(data), out, MAX_SIZE);
+        // stored as is when compressing does not make it smaller
+        Assert.assertEquals(0, out.getByte(out.readerIndex()));
+        Assert.assertArrayEquals(data, toArray(PacketCompression.threshold(0).decompress(out, MAX_SIZE)));
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsTooLarge() throws IOException {
+        FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.buffer());
+        buf.writeVarInt(MAX_SIZE + 1);
+        buf.writeBytes(new byte[16]);
+        PacketCompression.threshold(0).decompress(buf, MAX_SIZE);
+    }
+
+    @Test
+    public void testAboveMaxSizeIsNotCompressed() throws IOException {
+        byte[] data = new byte[MAX_SIZE + 1];
+        ByteBuf out = Unpooled.buffer();
+        PacketCompression.deflate(6).compress(Unpooled.wrappedBuffer(data), out, MAX_SIZE);
+        Assert.assertEquals(0, out.getByte(out.readerIndex()));
+        Assert.assertArrayEquals(data, toArray(PacketCompression.deflate(6).decompress(out, MAX_SIZE)));
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsWrongSize() throws IOException {
+        ByteBuf out = Unpooled.buffer();
+        PacketCompression.deflate(6).compress(Unpooled.wrappedBuffer(new byte[1000]), out, MAX_SIZE);
+        // claim one more byte than the compressed data has
+        ByteBuf tampered = Unpooled.buffer();
+        new FriendlyByteBuf(tampered).writeVarInt(new FriendlyByteBuf(out).readVarInt() + 1);
+        tampered.writeBytes(out);
+        PacketCompression.deflate(6).decompress(tampered, MAX_SIZE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLevel() {
+        PacketCompression.threshold(0, 10);
+    }
+
+    private static byte[] toArray(ByteBuf buf) {
+        byte[] bytes = new byte[buf.readableBytes()];
+        buf.readBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,38 @@
+package net.blueberrymc.network;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TokenBucketTest {
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    public void testBurst() {
+        TokenBucket bucket = new TokenBucket(RateLimit.of(10, 3), 0);
+        Assert.assertTrue(bucket.tryAcquire(0));
+        Assert.assertTrue(bucket.tryAcquire(0));
+        Assert.assertTrue(bucket.tryAcquire(0));
+        Assert.assertFalse(bucket.tryAcquire(0));
+    }
+
+    @Test
+    public void testRefill() {
+        TokenBucket bucket = new TokenBucket(RateLimit.of(10, 1), 0);
+        Assert.assertTrue(bucket.tryAcquire(0));
+        Assert.assertFalse(bucket.tryAcquire(SECOND / 20));
+        // 10 per second, one token after 100 ms
+        Assert.assertTrue(bucket.tryAcquire(SECOND / 10));
+        Assert.assertFalse(bucket.tryAcquire(SECOND / 10));
+    }
+
+    @Test
+    public void testRefillIsCappedAtBurst() {
+        TokenBucket bucket = new TokenBucket(RateLimit.of(10, 2), 0);
+        Assert.assertTrue(bucket.tryAcquire(0));
+        Assert.assertTrue(bucket.tryAcquire(0));
+        long now = 60 * SECOND;
+        Assert.assertTrue(bucket.tryAcquire(now));
+        Assert.assertTrue(bucket.tryAcquire(now));
+        Assert.assertFalse(bucket.tryAcquire(now));
+    }
+}
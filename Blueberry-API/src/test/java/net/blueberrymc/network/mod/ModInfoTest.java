@@ -0,0 +1,26 @@
+package net.blueberrymc.network.mod;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class ModInfoTest {
+    @Test
+    public void testDigestIgnoresOrder() {
+        ModInfo a = new ModInfo("a", "1.0");
+        ModInfo b = new ModInfo("b", "2.0");
+        ModInfo c = new ModInfo("c", "3.0");
+        Assert.assertEquals(ModInfo.digest(Arrays.asList(a, b, c)), ModInfo.digest(Arrays.asList(c, a, b)));
+    }
+
+    @Test
+    public void testDigestChanges() {
+        long digest = ModInfo.digest(Arrays.asList(new ModInfo("a", "1.0"), new ModInfo("b", "2.0")));
+        Assert.assertNotEquals(digest, ModInfo.digest(Arrays.asList(new ModInfo("a", "1.0"), new ModInfo("b", "2.1"))));
+        Assert.assertNotEquals(digest, ModInfo.digest(Collections.singletonList(new ModInfo("a", "1.0"))));
+        // the separator keeps the id and the version apart
+        Assert.assertNotEquals(ModInfo.digest(Collections.singletonList(new ModInfo("ab", "1"))), ModInfo.digest(Collections.singletonList(new ModInfo("a", "b1"))));
+    }
+}
@@ -0,0 +1,35 @@
+package net.minecraft.launchwrapper;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class PrefixMatcherTest {
+    @Test
+    public void testMatches() {
+        PrefixMatcher matcher = PrefixMatcher.compile(Arrays.asList("java.", "net.minecraft.launchwrapper.", "net.minecraft.launch"));
+        Assert.assertTrue(matcher.matches("java.lang.String"));
+        Assert.assertTrue(matcher.matches("net.minecraft.launchwrapper.Launch"));
+        Assert.assertTrue(matcher.matches("net.minecraft.launch"));
+        Assert.assertFalse(matcher.matches("javax.swing.JFrame"));
+        Assert.assertFalse(matcher.matches("net.minecraft.client.Minecraft"));
+        Assert.assertFalse(matcher.matches("net.minecraft."));
+        Assert.assertFalse(matcher.matches(""));
+    }
+
+    @Test
+    public void testEmpty() {
+        Assert.assertSame(PrefixMatcher.EMPTY, PrefixMatcher.compile(Collections.emptyList()));
+        Assert.assertFalse(PrefixMatcher.EMPTY.matches("java.lang.String"));
+        Assert.assertFalse(PrefixMatcher.EMPTY.matches(""));
+    }
+
+    @Test
+    public void testEmptyPrefix() {
+        PrefixMatcher matcher = PrefixMatcher.compile(Arrays.asList("", "java."));
+        Assert.assertTrue(matcher.matches(""));
+        Assert.assertTrue(matcher.matches("net.minecraft.client.Minecraft"));
+    }
+}